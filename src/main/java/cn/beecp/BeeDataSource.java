@@ -48,6 +48,11 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 	 */
 	private ConnectionPool pool;
 
+	/**
+	 * keyed pools of other credentials,null if 'credentialPoolSize' is zero
+	 */
+	private CredentialPools credentialPools;
+
 	/**
 	 * failed cause to creating pool
 	 */
@@ -81,6 +86,7 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 		try {
 			config.copyTo(this);
 			pool = createPool(this);
+			if(getCredentialPoolSize()>0)credentialPools=new CredentialPools(this);
 			inited=true;
 		}catch(SQLException e){
 			throw new ExceptionInInitializerError(e);
@@ -109,12 +115,17 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 	 */
 	public Connection getConnection() throws SQLException {
 		if(inited)return pool.getConnection();
-
+		initPool();
+		return pool.getConnection();
+	}
+	//create pool on first borrowing
+	private void initPool() throws SQLException {
 		if(writeLock.tryLock()) {
 			if(!inited){
 				try {
 					failedCause = null;
 					pool=createPool(this);
+					if(getCredentialPoolSize()>0)credentialPools=new CredentialPools(this);
 					inited=true;
 				} catch (SQLException e) {
 					failedCause = e;
@@ -131,8 +142,6 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 				readLock.unlock();
 			}
 		}
-
-		return pool.getConnection();
 	}
 
 	/**
@@ -150,7 +159,12 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 	 * current database connection attempt
 	 */
 	public Connection getConnection(String username, String password) throws SQLException {
-		throw new SQLException("Not support");
+		if(!inited)initPool();
+		if(isSameCredential(username,password))
+			return pool.getConnection();
+		if(credentialPools==null)
+			throw new SQLException("Not support,'credentialPoolSize' is zero");
+		return credentialPools.getConnection(username,password);
 	}
 
 	public void close()throws SQLException {
@@ -158,6 +172,8 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 		if(pool!=null) {
 			pool.shutdown();
 		}
+		if(credentialPools!=null)
+			credentialPools.close();
 	}
 	public boolean isClosed()throws SQLException {
 		if(pool!=null) {
@@ -166,6 +182,20 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 			throw new SQLException("DataSource not initialized");
 		}
 	}
+	/**
+	 * readiness of data source,which can be used by health checks when pool initialized in background
+	 *
+	 * @return true,pool has created initial connections
+	 */
+	public boolean isReady() {
+		return inited && pool.isReady();
+	}
+	/**
+	 * pool of data source,null if not initialized
+	 */
+	ConnectionPool getPool() {
+		return pool;
+	}
 	private void checkClosed()throws SQLException {
 		if(pool!=null) {
 			if(pool.isShutdown())
@@ -210,7 +240,7 @@ public final class BeeDataSource extends BeeDataSourceConfig implements DataSour
 	 * @param config  pool configuration
 	 * @return a initialized pool for data source
 	 */
-	private static final ConnectionPool createPool(BeeDataSourceConfig config)throws SQLException{
+	static final ConnectionPool createPool(BeeDataSourceConfig config)throws SQLException{
 		String poolImplementClassName=config.getPoolImplementClassName();
 
 		try {
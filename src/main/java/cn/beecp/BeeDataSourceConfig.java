@@ -15,8 +15,12 @@
  */
 package cn.beecp;
 
+import cn.beecp.pool.ConnectionBudget;
 import cn.beecp.pool.DataSourceConnectionFactory;
 import cn.beecp.pool.DriverConnectionFactory;
+import cn.beecp.pool.MultiHostConnectionFactory;
+import cn.beecp.pool.PoolEventRecorder;
+import cn.beecp.pool.SharedPoolThreads;
 
 import javax.sql.DataSource;
 import java.io.File;
@@ -33,6 +37,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
 
+import static cn.beecp.util.BeecpUtil.equalsText;
 import static cn.beecp.util.BeecpUtil.isNullText;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -64,6 +69,16 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	 *  URL
 	 */
 	private String jdbcUrl;
+
+	/**
+	 * URLs of multiple hosts(separated by '|'),connections are spread over them by weight
+	 */
+	private String jdbcUrls;
+
+	/**
+	 * weights of 'jdbcUrls'(separated by comma),default weight is 1
+	 */
+	private String jdbcUrlWeights;
 	
 	/**
 	 * driver class name
@@ -85,16 +100,48 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	 * pool initialization size
 	 */
 	private int initialSize;
+
+	/**
+	 * max size of concurrent creation on initial connections
+	 */
+	private int initialConcurrentSize;
+
+	/**
+	 * true,pool initialization fail on first error of initial connections;false,accept a partial pool
+	 */
+	private boolean initialFailFast=true;
+
+	/**
+	 * true,initial connections are created in background and pool serves borrowers on startup
+	 */
+	private boolean asyncInit;
 	
 	/**
 	 * pool allow max size
 	 */
 	private int maxActive=10;
+
+	/**
+	 * min size of idle connections kept ready by pool creator thread
+	 */
+	private int minIdle;
+
+	/**
+	 * milliseconds,window of pool auto sizing,pool max size is adjusted in [minIdle,maxActive] by
+	 * load sampled in the window,zero means disabled
+	 */
+	private long autoSizeInterval;
 	
 	/**
 	 * pool borrow concurrent Size
 	 */
 	private int borrowConcurrentSize;
+
+	/**
+	 * workload groups sharing pool(separated by comma),every group is 'name:weight[:minSize]',borrowers
+	 * bound to a group by 'WorkloadGroup' get its minimum and weighted share of 'maxActive',others belong to first group
+	 */
+	private String workloadGroups;
 	
 	/**
 	 * 'PreparedStatement' cache size
@@ -130,6 +177,18 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	 * connection.setReadOnly
 	 */
 	private boolean defaultReadOnly;
+
+	/**
+	 * true,session state(autoCommit,isolation,readOnly,catalog,schema,holdability)of raw connection is tracked in pool,
+	 * setters with same value are not forwarded to driver and getters are served from tracked state
+	 */
+	private boolean cacheSessionState;
+
+	/**
+	 * class name prefixes(separated by comma)of raw connections excluded from session state cache,
+	 * for drivers must see every call or ignore some setters(for example:'setCatalog')
+	 */
+	private String cacheSessionStateExcludes;
  
 	/**
 	 * borrower request timeout(milliseconds)
@@ -147,11 +206,48 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	 */
 	private long holdTimeout=MINUTES.toMillis(5);
 
+	/**
+	 * milliseconds,max life time of connections,every connection is retired earlier by a random jitter
+	 * up to one tenth of the time,zero means no limit
+	 */
+	private long maxLifetime;
+
+	/**
+	 * max use count of connections,every connection is retired earlier by a random jitter up to one
+	 * tenth of the count,zero means no limit
+	 */
+	private int maxUsesPerConnection;
+
+	/**
+	 * max percent of pool size retired in one second by life time or use count
+	 */
+	private int maxRetirePercent=10;
+
 	/**
 	 * a test SQL to check connection active state
 	 */
 	private String connectionTestSQL = "select 1 from dual";
 
+	/**
+	 * dialect to validate connections in one round trip,built-in dialect is picked by driver when not set
+	 */
+	private ValidationDialect validationDialect;
+
+	/**
+	 * validation dialect class name
+	 */
+	private String validationDialectClassName;
+
+	/**
+	 * dialect to reset connections on return in fewer round trips,built-in dialect is picked by driver when not set(MySQL dialect after probe)
+	 */
+	private ResetDialect resetDialect;
+
+	/**
+	 * reset dialect class name
+	 */
+	private String resetDialectClassName;
+
 	/**
 	 * connection validate timeout:3 seconds
 	 */
@@ -161,6 +257,23 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	 * milliseconds,max inactive time to check active for borrower
 	 */
 	private long connectionTestInterval = 500L;
+
+	/**
+	 * milliseconds,idle connections are tested in background within the interval and borrowers
+	 * skip inline test on them,zero means disabled
+	 */
+	private long backgroundTestInterval;
+
+	/**
+	 * size of threads to test idle connections in background
+	 */
+	private int backgroundTestConcurrentSize=2;
+
+	/**
+	 * true,dirty connections(uncommitted or changed attributes)are reset in background on return,
+	 * so 'close' returns at once and reset errors are logged without throwing
+	 */
+	private boolean asyncReset;
 	
 	/**
 	 * close all connections in force when shutdown
@@ -173,9 +286,10 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	private long waitTimeToClearPool=3;
 	
 	/**
-	 * milliseconds,idle Check Time Period 
+	 * milliseconds,tick time of timeout check timer wheel,idle and hold timeout
+	 * connections are processed within one tick after their deadline
 	 */
-	private long idleCheckTimeInterval=MINUTES.toMillis(3);
+	private long idleCheckTimeInterval=SECONDS.toMillis(1);
 	
 	/**
 	 * milliseconds,idle Check Time initialize delay
@@ -196,6 +310,37 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	 * Physical JDBC Connection factory
 	 */
 	private ConnectionFactory connectionFactory;
+
+	/**
+	 * threads shared by some pools(timer,connection creation,network timeout and exit hook),not shutdown with pool
+	 */
+	private SharedPoolThreads sharedPoolThreads;
+
+	/**
+	 * connection count budget shared by some pools,an idle connection of other pool is closed when it exhausted
+	 */
+	private ConnectionBudget connectionBudget;
+
+	/**
+	 * max size of keyed pools for credentials of 'getConnection(username,password)',they share 'maxActive'
+	 * with main pool and the least recently used idle one is closed when full,zero means not supported
+	 */
+	private int credentialPoolSize;
+
+	/**
+	 * count of continuous creation failures to open breaker,which makes borrowers fail fast,zero means disabled(default)
+	 */
+	private int createBreakerThreshold;
+
+	/**
+	 * milliseconds,initial backoff time of open breaker,doubled on every failed probe
+	 */
+	private long createBreakerBackoff=SECONDS.toMillis(1);
+
+	/**
+	 * milliseconds,max backoff time of open breaker
+	 */
+	private long createBreakerMaxBackoff=SECONDS.toMillis(30);
 	
 	/**
 	 * connection extra properties
@@ -206,6 +351,63 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	 * enableJMX
 	 */
 	private boolean enableJMX;
+
+	/**
+	 * pool event listener
+	 */
+	private PoolEventListener poolEventListener;
+
+	/**
+	 * pool event listener class name
+	 */
+	private String poolEventListenerClassName;
+
+	/**
+	 * event types(separated by comma)delivered to pool event listener
+	 */
+	private String poolEventTypes=PoolEventType.EVENT_TYPE_LIST;
+
+	/**
+	 * event type code mask,resolved from 'poolEventTypes'
+	 */
+	private int poolEventMask;
+
+	/**
+	 * recent pool events kept in recorder,zero means disabled
+	 */
+	private int eventRecorderSize;
+
+	/**
+	 * file to write recent pool events when pool shutdown
+	 */
+	private String eventRecorderDumpFile;
+
+	/**
+	 * SQLState prefixes(separated by comma)of fatal exceptions,connection is abandoned on return after them
+	 */
+	private String fatalSQLStates="08,57P01,57P02,57P03,01002";
+
+	/**
+	 * vendor error codes(separated by comma)of fatal exceptions
+	 */
+	private String fatalErrorCodes;
+
+	/**
+	 * classifier of fatal exceptions,default classifier is built with 'fatalSQLStates' and 'fatalErrorCodes'
+	 */
+	private SQLExceptionClassifier sqlExceptionClassifier;
+
+	/**
+	 * classifier class name of fatal exceptions
+	 */
+	private String sqlExceptionClassifierClassName;
+
+	/**
+	 * action on idle connections after a fatal exception(likely database failover),
+	 * none:no action,test:test them in background,evict:remove them;
+	 * removed connections are replaced by new ones at once
+	 */
+	private String fatalErrorIdleAction="none";
 	
 	/**
 	 * Default implementation class name
@@ -221,6 +423,7 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		this.password = password;
 		this.driverClassName = driver;
 		borrowConcurrentSize =Runtime.getRuntime().availableProcessors();
+		initialConcurrentSize =1;
 		defaultTransactionIsolation=TransactionIsolationLevel.LEVEL_READ_COMMITTED;
 		defaultTransactionIsolationCode=TransactionIsolationLevel.CODE_READ_COMMITTED;
 	}
@@ -252,6 +455,20 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		if(!this.checked && !isNullText(jdbcUrl))
 		this.jdbcUrl = jdbcUrl;
 	}
+	public String getJdbcUrls() {
+		return jdbcUrls;
+	}
+	public void setJdbcUrls(String jdbcUrls) {
+		if(!this.checked && !isNullText(jdbcUrls))
+		this.jdbcUrls = jdbcUrls;
+	}
+	public String getJdbcUrlWeights() {
+		return jdbcUrlWeights;
+	}
+	public void setJdbcUrlWeights(String jdbcUrlWeights) {
+		if(!this.checked && !isNullText(jdbcUrlWeights))
+		this.jdbcUrlWeights = jdbcUrlWeights;
+	}
 	public String getDriverClassName() {
 		return driverClassName;
 	}
@@ -273,6 +490,48 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		if(!this.checked)
 		this.connectionFactory = connectionFactory;
 	}
+	public SharedPoolThreads getSharedPoolThreads() {
+		return sharedPoolThreads;
+	}
+	public void setSharedPoolThreads(SharedPoolThreads sharedPoolThreads) {
+		if(!this.checked)
+		this.sharedPoolThreads = sharedPoolThreads;
+	}
+	public ConnectionBudget getConnectionBudget() {
+		return connectionBudget;
+	}
+	public void setConnectionBudget(ConnectionBudget connectionBudget) {
+		if(!this.checked)
+		this.connectionBudget = connectionBudget;
+	}
+	public int getCredentialPoolSize() {
+		return credentialPoolSize;
+	}
+	public void setCredentialPoolSize(int credentialPoolSize) {
+		if(!this.checked && credentialPoolSize>=0)
+		this.credentialPoolSize = credentialPoolSize;
+	}
+	public int getCreateBreakerThreshold() {
+		return createBreakerThreshold;
+	}
+	public void setCreateBreakerThreshold(int createBreakerThreshold) {
+		if(!this.checked && createBreakerThreshold>=0)
+		this.createBreakerThreshold = createBreakerThreshold;
+	}
+	public long getCreateBreakerBackoff() {
+		return createBreakerBackoff;
+	}
+	public void setCreateBreakerBackoff(long createBreakerBackoff) {
+		if(!this.checked && createBreakerBackoff>0)
+		this.createBreakerBackoff = createBreakerBackoff;
+	}
+	public long getCreateBreakerMaxBackoff() {
+		return createBreakerMaxBackoff;
+	}
+	public void setCreateBreakerMaxBackoff(long createBreakerMaxBackoff) {
+		if(!this.checked && createBreakerMaxBackoff>0)
+		this.createBreakerMaxBackoff = createBreakerMaxBackoff;
+	}
 	 
 	public String getPoolName() {
 		return poolName;
@@ -295,6 +554,27 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		if(!this.checked && initialSize>0)
 		this.initialSize = initialSize;
 	}
+	public int getInitialConcurrentSize() {
+		return initialConcurrentSize;
+	}
+	public void setInitialConcurrentSize(int initialConcurrentSize) {
+		if(!this.checked && initialConcurrentSize>0)
+		this.initialConcurrentSize = initialConcurrentSize;
+	}
+	public boolean isInitialFailFast() {
+		return initialFailFast;
+	}
+	public void setInitialFailFast(boolean initialFailFast) {
+		if(!this.checked)
+		this.initialFailFast = initialFailFast;
+	}
+	public boolean isAsyncInit() {
+		return asyncInit;
+	}
+	public void setAsyncInit(boolean asyncInit) {
+		if(!this.checked)
+		this.asyncInit = asyncInit;
+	}
 	public int getMaxActive() {
 		return maxActive;
 	}
@@ -302,6 +582,20 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		if(!this.checked && maxActive>0)
 		this.maxActive = maxActive;
 	}
+	public int getMinIdle() {
+		return minIdle;
+	}
+	public void setMinIdle(int minIdle) {
+		if(!this.checked && minIdle>=0)
+		this.minIdle = minIdle;
+	}
+	public long getAutoSizeInterval() {
+		return autoSizeInterval;
+	}
+	public void setAutoSizeInterval(long autoSizeInterval) {
+		if(!this.checked && autoSizeInterval>=0)
+		this.autoSizeInterval = autoSizeInterval;
+	}
 	public int getBorrowConcurrentSize() {
 		return borrowConcurrentSize;
 	}
@@ -309,6 +603,13 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		if(!this.checked && borrowConcurrentSize>0)
 		this.borrowConcurrentSize = borrowConcurrentSize;
 	}
+	public String getWorkloadGroups() {
+		return workloadGroups;
+	}
+	public void setWorkloadGroups(String workloadGroups) {
+		if(!this.checked && !isNullText(workloadGroups))
+		this.workloadGroups = workloadGroups;
+	}
 	public int getPreparedStatementCacheSize() {
 		return preparedStatementCacheSize;
 	}
@@ -351,6 +652,20 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	   if(!this.checked)
 		this.defaultReadOnly = readOnly;
 	}
+	public boolean isCacheSessionState() {
+		return cacheSessionState;
+	}
+	public void setCacheSessionState(boolean cacheSessionState) {
+		if(!this.checked)
+		this.cacheSessionState = cacheSessionState;
+	}
+	public String getCacheSessionStateExcludes() {
+		return cacheSessionStateExcludes;
+	}
+	public void setCacheSessionStateExcludes(String cacheSessionStateExcludes) {
+		if(!this.checked)
+		this.cacheSessionStateExcludes = cacheSessionStateExcludes;
+	}
 	public long getMaxWait() {
 		return maxWait;
 	}
@@ -372,6 +687,27 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		if(!this.checked && holdTimeout>0)
 		this.holdTimeout = holdTimeout;
 	}
+	public long getMaxLifetime() {
+		return maxLifetime;
+	}
+	public void setMaxLifetime(long maxLifetime) {
+		if(!this.checked && maxLifetime>=0)
+		this.maxLifetime = maxLifetime;
+	}
+	public int getMaxUsesPerConnection() {
+		return maxUsesPerConnection;
+	}
+	public void setMaxUsesPerConnection(int maxUsesPerConnection) {
+		if(!this.checked && maxUsesPerConnection>=0)
+		this.maxUsesPerConnection = maxUsesPerConnection;
+	}
+	public int getMaxRetirePercent() {
+		return maxRetirePercent;
+	}
+	public void setMaxRetirePercent(int maxRetirePercent) {
+		if(!this.checked && maxRetirePercent>0 && maxRetirePercent<=100)
+		this.maxRetirePercent = maxRetirePercent;
+	}
 	public String getConnectionTestSQL() {
 		return connectionTestSQL;
 	}
@@ -379,6 +715,34 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	if (!this.checked && !isNullText(validationQuery)) 
 		this.connectionTestSQL = validationQuery;
 	}
+	public ValidationDialect getValidationDialect() {
+		return validationDialect;
+	}
+	public void setValidationDialect(ValidationDialect validationDialect) {
+		if(!this.checked)
+		this.validationDialect = validationDialect;
+	}
+	public String getValidationDialectClassName() {
+		return validationDialectClassName;
+	}
+	public void setValidationDialectClassName(String validationDialectClassName) {
+		if(!this.checked && !isNullText(validationDialectClassName))
+		this.validationDialectClassName = validationDialectClassName;
+	}
+	public ResetDialect getResetDialect() {
+		return resetDialect;
+	}
+	public void setResetDialect(ResetDialect resetDialect) {
+		if(!this.checked)
+		this.resetDialect = resetDialect;
+	}
+	public String getResetDialectClassName() {
+		return resetDialectClassName;
+	}
+	public void setResetDialectClassName(String resetDialectClassName) {
+		if(!this.checked && !isNullText(resetDialectClassName))
+		this.resetDialectClassName = resetDialectClassName;
+	}
 	public int getConnectionTestTimeout() {
 		return connectionTestTimeout;
 	}
@@ -393,6 +757,27 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		if(!this.checked && connectionTestInterval>0) 
 		this.connectionTestInterval = connectionTestInterval;
 	}
+	public long getBackgroundTestInterval() {
+		return backgroundTestInterval;
+	}
+	public void setBackgroundTestInterval(long backgroundTestInterval) {
+		if(!this.checked && backgroundTestInterval>=0)
+		this.backgroundTestInterval = backgroundTestInterval;
+	}
+	public int getBackgroundTestConcurrentSize() {
+		return backgroundTestConcurrentSize;
+	}
+	public void setBackgroundTestConcurrentSize(int backgroundTestConcurrentSize) {
+		if(!this.checked && backgroundTestConcurrentSize>0)
+		this.backgroundTestConcurrentSize = backgroundTestConcurrentSize;
+	}
+	public boolean isAsyncReset() {
+		return asyncReset;
+	}
+	public void setAsyncReset(boolean asyncReset) {
+		if(!this.checked)
+		this.asyncReset = asyncReset;
+	}
 
 	public boolean isForceCloseConnection() {
 		return forceCloseConnection;
@@ -449,6 +834,79 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	  if(!this.checked)
 		this.enableJMX = enableJMX;
 	}
+	public PoolEventListener getPoolEventListener() {
+		return poolEventListener;
+	}
+	public void setPoolEventListener(PoolEventListener poolEventListener) {
+		if(!this.checked)
+		this.poolEventListener = poolEventListener;
+	}
+	public String getPoolEventListenerClassName() {
+		return poolEventListenerClassName;
+	}
+	public void setPoolEventListenerClassName(String poolEventListenerClassName) {
+		if(!this.checked && !isNullText(poolEventListenerClassName))
+		this.poolEventListenerClassName = poolEventListenerClassName;
+	}
+	public String getPoolEventTypes() {
+		return poolEventTypes;
+	}
+	public void setPoolEventTypes(String poolEventTypes) {
+		if(!this.checked && !isNullText(poolEventTypes))
+		this.poolEventTypes = poolEventTypes;
+	}
+	public int getPoolEventMask() {
+		return poolEventMask;
+	}
+	public int getEventRecorderSize() {
+		return eventRecorderSize;
+	}
+	public void setEventRecorderSize(int eventRecorderSize) {
+		if(!this.checked && eventRecorderSize>=0)
+		this.eventRecorderSize = eventRecorderSize;
+	}
+	public String getEventRecorderDumpFile() {
+		return eventRecorderDumpFile;
+	}
+	public void setEventRecorderDumpFile(String eventRecorderDumpFile) {
+		if(!this.checked && !isNullText(eventRecorderDumpFile))
+		this.eventRecorderDumpFile = eventRecorderDumpFile;
+	}
+	public String getFatalSQLStates() {
+		return fatalSQLStates;
+	}
+	public void setFatalSQLStates(String fatalSQLStates) {
+		if(!this.checked)
+		this.fatalSQLStates = fatalSQLStates;
+	}
+	public String getFatalErrorCodes() {
+		return fatalErrorCodes;
+	}
+	public void setFatalErrorCodes(String fatalErrorCodes) {
+		if(!this.checked)
+		this.fatalErrorCodes = fatalErrorCodes;
+	}
+	public SQLExceptionClassifier getSQLExceptionClassifier() {
+		return sqlExceptionClassifier;
+	}
+	public void setSQLExceptionClassifier(SQLExceptionClassifier sqlExceptionClassifier) {
+		if(!this.checked)
+		this.sqlExceptionClassifier = sqlExceptionClassifier;
+	}
+	public String getSQLExceptionClassifierClassName() {
+		return sqlExceptionClassifierClassName;
+	}
+	public void setSQLExceptionClassifierClassName(String sqlExceptionClassifierClassName) {
+		if(!this.checked && !isNullText(sqlExceptionClassifierClassName))
+		this.sqlExceptionClassifierClassName = sqlExceptionClassifierClassName;
+	}
+	public String getFatalErrorIdleAction() {
+		return fatalErrorIdleAction;
+	}
+	public void setFatalErrorIdleAction(String fatalErrorIdleAction) {
+		if(!this.checked && !isNullText(fatalErrorIdleAction))
+		this.fatalErrorIdleAction = fatalErrorIdleAction.trim().toLowerCase();
+	}
 	void copyTo(BeeDataSourceConfig config)throws SQLException{
 		int modifiers;
 		Field[] fields=BeeDataSourceConfig.class.getDeclaredFields();
@@ -470,6 +928,25 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		}
 	}
 	
+	//credential equals to configured one
+	boolean isSameCredential(String username,String password){
+		return equalsText(this.username,username) && equalsText(this.password,password);
+	}
+	//configuration of keyed pool for a credential,created with no connection and sharing budget of this
+	BeeDataSourceConfig copyForCredential(String username,String password,ConnectionFactory connectionFactory)throws SQLException{
+		BeeDataSourceConfig config=new BeeDataSourceConfig();
+		copyTo(config);
+		config.username=username;
+		config.password=password;
+		config.connectionFactory=connectionFactory;
+		config.poolName=(isNullText(poolName)?"CredentialPool":poolName)+"-"+username;
+		config.initialSize=0;
+		config.minIdle=0;
+		config.credentialPoolSize=0;
+		config.eventRecorderDumpFile=null;
+		return config;
+	}
+
 	private Driver loadJdbcDriver(String driverClassName) throws BeeDataSourceConfigException {
 		try {
 			Class<?> driverClass = Class.forName(driverClassName,true,this.getClass().getClassLoader());
@@ -489,6 +966,26 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 	//check pool configuration
 	void check()throws SQLException {
 		if(connectionFactory==null && isNullText(this.connectionFactoryClassName)){
+			String[] connectURLs=null;
+			int[] weights=null;
+			if(!isNullText(jdbcUrls)){
+				connectURLs=jdbcUrls.trim().split("\\s*\\|\\s*");
+				if(isNullText(jdbcUrl))jdbcUrl=connectURLs[0];
+				weights=new int[connectURLs.length];
+				String[] weightTexts=isNullText(jdbcUrlWeights)?new String[0]:jdbcUrlWeights.trim().split("\\s*,\\s*");
+				if(weightTexts.length>connectURLs.length)
+					throw new BeeDataSourceConfigException("Size of 'jdbcUrlWeights' must not be greater than size of 'jdbcUrls'");
+				for(int i=0;i<weights.length;i++){
+					try{
+						weights[i]=i<weightTexts.length?Integer.parseInt(weightTexts[i]):1;
+					}catch(NumberFormatException e){
+						weights[i]=0;
+					}
+					if(weights[i]<=0)
+						throw new BeeDataSourceConfigException("Pool 'jdbcUrlWeights' must be integers greater than zero");
+				}
+			}
+
 			Driver connectDriver=null;
 			if(!isNullText(driverClassName)){
 				connectDriver=loadJdbcDriver(driverClassName);
@@ -506,7 +1003,10 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 			if (!isNullText(this.password))
 				this.connectProperties.put("password", this.password);
 			
-			connectionFactory= new DriverConnectionFactory(jdbcUrl,connectDriver,connectProperties);
+			if(connectURLs!=null)
+				connectionFactory= new MultiHostConnectionFactory(connectURLs,weights,connectDriver,connectProperties,createBreakerThreshold,createBreakerBackoff,createBreakerMaxBackoff);
+			else
+				connectionFactory= new DriverConnectionFactory(jdbcUrl,connectDriver,connectProperties);
 		}else if(connectionFactory==null && !isNullText(this.connectionFactoryClassName)){
 			try {
  				Class<?> conFactClass=Class.forName(connectionFactoryClassName,true,BeeDataSourceConfig.class.getClassLoader());
@@ -540,14 +1040,47 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 		
 		if (this.maxActive <= 0)
 			throw new BeeDataSourceConfigException("Pool 'maxActive' must be greater than zero");
+		if (this.credentialPoolSize > 0 && connectionBudget == null)
+			connectionBudget=new ConnectionBudget(maxActive);//global cap of main pool and credential pools
 		if (this.initialSize < 0)
 			throw new BeeDataSourceConfigException("Pool 'initialSize' must be greater than zero");
 		if (this.initialSize > maxActive)
 			throw new BeeDataSourceConfigException("Pool 'initialSize' must not be greater than 'maxActive'");
+		if (this.initialConcurrentSize <= 0)
+			throw new BeeDataSourceConfigException("Pool 'initialConcurrentSize' must be greater than zero");
+		if (this.createBreakerMaxBackoff < this.createBreakerBackoff)
+			throw new BeeDataSourceConfigException("Pool 'createBreakerMaxBackoff' must not be less than 'createBreakerBackoff'");
+		if (this.autoSizeInterval > 0 && this.autoSizeInterval < 1000L)
+			throw new BeeDataSourceConfigException("Pool 'autoSizeInterval' must not be less than 1000 milliseconds");
+		if (this.backgroundTestInterval > 0 && this.backgroundTestInterval < 1000L)
+			throw new BeeDataSourceConfigException("Pool 'backgroundTestInterval' must not be less than 1000 milliseconds");
+		if (this.minIdle < 0)
+			throw new BeeDataSourceConfigException("Pool 'minIdle' must not be less than zero");
+		if (this.minIdle > maxActive)
+			throw new BeeDataSourceConfigException("Pool 'minIdle' must not be greater than 'maxActive'");
 		if (this.borrowConcurrentSize <=0)
 			throw new BeeDataSourceConfigException("Pool 'borrowConcurrentSize' must be greater than zero");
 		if (this.borrowConcurrentSize > maxActive)
 			throw new BeeDataSourceConfigException("Pool 'borrowConcurrentSize' must not be greater than pool max size");
+		if (!isNullText(workloadGroups)) {
+			int totalMinSize=0;
+			for(String groupText:workloadGroups.trim().split("\\s*,\\s*")){
+				String[] items=groupText.split("\\s*:\\s*");
+				int weight,minSize;
+				try{
+					weight=items.length>1?Integer.parseInt(items[1]):1;
+					minSize=items.length>2?Integer.parseInt(items[2]):0;
+				}catch(NumberFormatException e){
+					weight=0;
+					minSize=-1;
+				}
+				if(isNullText(items[0]) || items.length>3 || weight<=0 || minSize<0)
+					throw new BeeDataSourceConfigException("Pool 'workloadGroups' item must be 'name:weight[:minSize]' with weight greater than zero:"+groupText);
+				totalMinSize+=minSize;
+			}
+			if(totalMinSize>maxActive)
+				throw new BeeDataSourceConfigException("Sum of min sizes in 'workloadGroups' must not be greater than 'maxActive'");
+		}
 		if (this.idleTimeout <= 0)
 			throw new BeeDataSourceConfigException("Connection 'idleTimeout' must be greater than zero");
 		if (this.holdTimeout <= 0)
@@ -556,12 +1089,93 @@ public class BeeDataSourceConfig implements BeeDataSourceConfigJMXBean{
 			throw new BeeDataSourceConfigException("Borrower 'maxWait' must be greater than zero");
 		if (this.preparedStatementCacheSize < 0)
 			throw new BeeDataSourceConfigException("Connection 'preparedStatementCacheSize' must not be lesser than zero");
+		if (this.eventRecorderSize < 0 || this.eventRecorderSize > PoolEventRecorder.MAX_SIZE)
+			throw new BeeDataSourceConfigException("Pool 'eventRecorderSize' must be in range[0,"+PoolEventRecorder.MAX_SIZE+"]");
+
+		if(!"none".equals(fatalErrorIdleAction) && !"test".equals(fatalErrorIdleAction) && !"evict".equals(fatalErrorIdleAction))
+			throw new BeeDataSourceConfigException("Pool 'fatalErrorIdleAction' must be one of none,test,evict");
 
 		defaultTransactionIsolationCode=TransactionIsolationLevel.nameToCode(defaultTransactionIsolation);
 		if(defaultTransactionIsolationCode==-999){
 			throw new BeeDataSourceConfigException("Valid transaction isolation level list:"+TransactionIsolationLevel.TRANS_LEVEL_LIST);
 		}
 
+		if(poolEventListener==null && !isNullText(poolEventListenerClassName)){
+			try {
+				Class<?> listenerClass=Class.forName(poolEventListenerClassName,true,BeeDataSourceConfig.class.getClassLoader());
+				if(!PoolEventListener.class.isAssignableFrom(listenerClass))
+					throw new BeeDataSourceConfigException("Pool event listener class must be implemented 'PoolEventListener' interface");
+				poolEventListener=(PoolEventListener)listenerClass.newInstance();
+			} catch (ClassNotFoundException e) {
+				throw new BeeDataSourceConfigException("Class("+poolEventListenerClassName+")not found ");
+			} catch (InstantiationException e) {
+				throw new BeeDataSourceConfigException("Failed to instantiate pool event listener class:"+poolEventListenerClassName,e);
+			} catch (IllegalAccessException e) {
+				throw new BeeDataSourceConfigException("Failed to instantiate pool event listener class:"+poolEventListenerClassName,e);
+			}
+		}
+		if(validationDialect==null && !isNullText(validationDialectClassName)){
+			try {
+				Class<?> dialectClass=Class.forName(validationDialectClassName,true,BeeDataSourceConfig.class.getClassLoader());
+				if(!ValidationDialect.class.isAssignableFrom(dialectClass))
+					throw new BeeDataSourceConfigException("Validation dialect class must be implemented 'ValidationDialect' interface");
+				validationDialect=(ValidationDialect)dialectClass.newInstance();
+			} catch (ClassNotFoundException e) {
+				throw new BeeDataSourceConfigException("Class("+validationDialectClassName+")not found ");
+			} catch (InstantiationException e) {
+				throw new BeeDataSourceConfigException("Failed to instantiate validation dialect class:"+validationDialectClassName,e);
+			} catch (IllegalAccessException e) {
+				throw new BeeDataSourceConfigException("Failed to instantiate validation dialect class:"+validationDialectClassName,e);
+			}
+		}
+		if(resetDialect==null && !isNullText(resetDialectClassName)){
+			try {
+				Class<?> dialectClass=Class.forName(resetDialectClassName,true,BeeDataSourceConfig.class.getClassLoader());
+				if(!ResetDialect.class.isAssignableFrom(dialectClass))
+					throw new BeeDataSourceConfigException("Reset dialect class must be implemented 'ResetDialect' interface");
+				resetDialect=(ResetDialect)dialectClass.newInstance();
+			} catch (ClassNotFoundException e) {
+				throw new BeeDataSourceConfigException("Class("+resetDialectClassName+")not found ");
+			} catch (InstantiationException e) {
+				throw new BeeDataSourceConfigException("Failed to instantiate reset dialect class:"+resetDialectClassName,e);
+			} catch (IllegalAccessException e) {
+				throw new BeeDataSourceConfigException("Failed to instantiate reset dialect class:"+resetDialectClassName,e);
+			}
+		}
+		if(sqlExceptionClassifier==null && !isNullText(sqlExceptionClassifierClassName)){
+			try {
+				Class<?> classifierClass=Class.forName(sqlExceptionClassifierClassName,true,BeeDataSourceConfig.class.getClassLoader());
+				if(!SQLExceptionClassifier.class.isAssignableFrom(classifierClass))
+					throw new BeeDataSourceConfigException("Exception classifier class must be implemented 'SQLExceptionClassifier' interface");
+				sqlExceptionClassifier=(SQLExceptionClassifier)classifierClass.newInstance();
+			} catch (ClassNotFoundException e) {
+				throw new BeeDataSourceConfigException("Class("+sqlExceptionClassifierClassName+")not found ");
+			} catch (InstantiationException e) {
+				throw new BeeDataSourceConfigException("Failed to instantiate exception classifier class:"+sqlExceptionClassifierClassName,e);
+			} catch (IllegalAccessException e) {
+				throw new BeeDataSourceConfigException("Failed to instantiate exception classifier class:"+sqlExceptionClassifierClassName,e);
+			}
+		}
+		if(!isNullText(fatalErrorCodes)){
+			for(String errorCode:fatalErrorCodes.split(",")){
+				try{
+					Integer.parseInt(errorCode.trim());
+				}catch(NumberFormatException e){
+					throw new BeeDataSourceConfigException("Pool 'fatalErrorCodes' must be integers separated by comma");
+				}
+			}
+		}
+
+		poolEventMask=0;
+		if(poolEventListener!=null){
+			for(String eventType:poolEventTypes.split(",")){
+				int eventCode=PoolEventType.nameToCode(eventType.trim());
+				if(eventCode==-999)
+					throw new BeeDataSourceConfigException("Valid pool event type list:"+PoolEventType.EVENT_TYPE_LIST);
+				poolEventMask|=eventCode;
+			}
+		}
+
 		//fix issue:#1 The check of validationQuerySQL has logic problem. Chris-2019-05-01 begin
 		//if (this.validationQuerySQL != null && validationQuerySQL.trim().length() == 0) {
 		if (!isNullText(this.connectionTestSQL) && !this.connectionTestSQL.trim().toLowerCase().startsWith("select "))
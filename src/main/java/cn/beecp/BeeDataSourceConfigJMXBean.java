@@ -28,20 +28,44 @@ public interface BeeDataSourceConfigJMXBean {
 
 	String getUrl();
 
+	String getJdbcUrls();
+
+	String getJdbcUrlWeights();
+
+	int getCredentialPoolSize();
+
 	String getDriverClassName();
 
 	String getConnectionFactoryClassName();
 
+	int getCreateBreakerThreshold();
+
+	long getCreateBreakerBackoff();
+
+	long getCreateBreakerMaxBackoff();
+
 	String getPoolName();
 
 	boolean isFairMode();
 
 	int getInitialSize();
 
+	int getInitialConcurrentSize();
+
+	boolean isInitialFailFast();
+
+	boolean isAsyncInit();
+
 	int getMaxActive();
 
+	int getMinIdle();
+
+	long getAutoSizeInterval();
+
 	int getBorrowConcurrentSize();
 
+	String getWorkloadGroups();
+
 	int getPreparedStatementCacheSize();
 
 	boolean isDefaultAutoCommit();
@@ -54,18 +78,38 @@ public interface BeeDataSourceConfigJMXBean {
 
 	boolean isDefaultReadOnly();
 
+	boolean isCacheSessionState();
+
+	String getCacheSessionStateExcludes();
+
 	long getMaxWait();
 
 	long getIdleTimeout();
 
 	long getHoldTimeout();
 
+	long getMaxLifetime();
+
+	int getMaxUsesPerConnection();
+
+	int getMaxRetirePercent();
+
 	String getConnectionTestSQL();
 
+	String getValidationDialectClassName();
+
+	String getResetDialectClassName();
+
 	int getConnectionTestTimeout();
 
 	long getConnectionTestInterval();
 
+	long getBackgroundTestInterval();
+
+	int getBackgroundTestConcurrentSize();
+
+	boolean isAsyncReset();
+
 	boolean isForceCloseConnection();
 
 	long getWaitTimeToClearPool();
@@ -77,4 +121,20 @@ public interface BeeDataSourceConfigJMXBean {
 	String getPoolImplementClassName();
 
 	boolean isEnableJMX();
+
+	String getPoolEventListenerClassName();
+
+	String getPoolEventTypes();
+
+	int getEventRecorderSize();
+
+	String getEventRecorderDumpFile();
+
+	String getFatalSQLStates();
+
+	String getFatalErrorCodes();
+
+	String getSQLExceptionClassifierClassName();
+
+	String getFatalErrorIdleAction();
 }
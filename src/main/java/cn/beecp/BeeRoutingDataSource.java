@@ -0,0 +1,366 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+import cn.beecp.pool.ConnectionPool;
+import cn.beecp.pool.ConnectionPoolJMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Read/write routing DataSource over one primary pool and some replica pools.
+ *
+ * 1) getConnection:lazy connection,routed to a replica when 'setReadOnly(true)' called before first statement
+ * 2) getReadConnection:routed to a replica directly
+ * 3) getWriteConnection:routed to primary directly
+ *
+ * Replicas are balanced by least using ratio of pool or recent hold time of their connections('latency' balance
+ * means time from borrow to close of connections,not network latency),ties are broken round-robin,reads fall back to primary when no replica is ready or borrowing from replica failed.
+ * Reads in 'readYourWritesWindow' after a write connection(not read only)closed on same thread are routed to primary.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class BeeRoutingDataSource implements DataSource {
+	//balance replicas by using size ratio of pools
+	public static final String BALANCE_LEAST_USING="leastUsing";
+	//balance replicas by recent hold time of connections(borrow to close),average decays while replica not picked
+	public static final String BALANCE_LATENCY="latency";
+
+	private static final Logger log = LoggerFactory.getLogger(BeeRoutingDataSource.class);
+	private static final Class[] CONNECTION_INTERFACES=new Class[]{Connection.class};
+	//hold times within this ratio are taken as tie,so replicas of near latency share reads
+	private static final double LATENCY_TIE_RATIO=0.8;
+
+	private final BeeDataSource primary;
+	private final Replica[] replicas;
+	private final AtomicInteger replicaCursor=new AtomicInteger();//start of replica scan,rotated for ties
+	private volatile boolean latencyBalance;
+	private volatile long readYourWritesWindow;//milliseconds
+	private final ThreadLocal<long[]> lastWriteTime=new ThreadLocal<long[]>(){
+		protected long[] initialValue(){return new long[1];}
+	};
+
+	/**
+	 * constructor,pools are created with configurations
+	 *
+	 * @param primaryConfig configuration of primary pool
+	 * @param replicaConfigs configurations of replica pools
+	 */
+	public BeeRoutingDataSource(BeeDataSourceConfig primaryConfig,List<BeeDataSourceConfig> replicaConfigs){
+		replicas=new Replica[replicaConfigs.size()];
+		primary=new BeeDataSource(primaryConfig);
+		boolean created=false;
+		try{
+			for(int i=0;i<replicas.length;i++)
+				replicas[i]=new Replica(new BeeDataSource(replicaConfigs.get(i)));
+			created=true;
+		}finally{
+			if(!created)closePools();
+		}
+	}
+
+	public String getReplicaBalance() {
+		return latencyBalance?BALANCE_LATENCY:BALANCE_LEAST_USING;
+	}
+	public void setReplicaBalance(String replicaBalance) {
+		if(BALANCE_LATENCY.equalsIgnoreCase(replicaBalance))
+			latencyBalance=true;
+		else if(BALANCE_LEAST_USING.equalsIgnoreCase(replicaBalance))
+			latencyBalance=false;
+		else
+			throw new BeeDataSourceConfigException("Replica balance must be one of "+BALANCE_LEAST_USING+","+BALANCE_LATENCY);
+	}
+	public long getReadYourWritesWindow() {
+		return readYourWritesWindow;
+	}
+	public void setReadYourWritesWindow(long readYourWritesWindow) {
+		if(readYourWritesWindow>=0)
+		this.readYourWritesWindow = readYourWritesWindow;
+	}
+	public BeeDataSource getPrimary() {
+		return primary;
+	}
+	public BeeDataSource getReplica(int index) {
+		return replicas[index].ds;
+	}
+	public int getReplicaSize() {
+		return replicas.length;
+	}
+
+	/**
+	 * borrow a lazy connection,physical connection is borrowed on first statement or metadata access,
+	 * from a replica if 'setReadOnly(true)' called before,otherwise from primary
+	 *
+	 * @return lazy routing connection
+	 * @throws SQLException if data source closed
+	 */
+	public Connection getConnection() throws SQLException {
+		checkClosed();
+		return (Connection)Proxy.newProxyInstance(BeeRoutingDataSource.class.getClassLoader(),CONNECTION_INTERFACES,new RoutingConnectionHandler());
+	}
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLException("Not support");
+	}
+
+	/**
+	 * borrow a connection from a replica,or from primary in read-your-writes window or no replica available,
+	 * its hold time is recorded to the replica on close
+	 *
+	 * @return connection for read
+	 * @throws SQLException if failed to borrow
+	 */
+	public Connection getReadConnection() throws SQLException {
+		checkClosed();
+		RoutingConnectionHandler handler=new RoutingConnectionHandler();
+		handler.readOnly=Boolean.TRUE;//close of read connection not start read-your-writes window
+		Replica replica=selectReplica();
+		if(replica!=null){
+			try {
+				handler.target=replica.ds.getConnection();
+				handler.replica=replica;
+			} catch (SQLException e) {
+				log.warn("Failed to borrow connection from replica,read on primary",e);
+			}
+		}
+		if(handler.target==null)handler.target=primary.getConnection();
+		handler.borrowTime=nanoTime();
+		return (Connection)Proxy.newProxyInstance(BeeRoutingDataSource.class.getClassLoader(),CONNECTION_INTERFACES,handler);
+	}
+
+	/**
+	 * borrow a connection from primary,its close starts read-your-writes window of current thread
+	 *
+	 * @return connection for write
+	 * @throws SQLException if failed to borrow
+	 */
+	public Connection getWriteConnection() throws SQLException {
+		checkClosed();
+		RoutingConnectionHandler handler=new RoutingConnectionHandler();
+		handler.target=primary.getConnection();
+		handler.borrowTime=nanoTime();
+		return (Connection)Proxy.newProxyInstance(BeeRoutingDataSource.class.getClassLoader(),CONNECTION_INTERFACES,handler);
+	}
+
+	public void close()throws SQLException {
+		closePools();
+	}
+	public boolean isClosed()throws SQLException {
+		return primary.isClosed();
+	}
+	private void closePools() {
+		for(Replica replica:replicas)
+			if(replica!=null)closePool(replica.ds);
+		closePool(primary);
+	}
+	private static void closePool(BeeDataSource ds) {
+		try {
+			if(!ds.isClosed())ds.close();
+		} catch (SQLException e) {
+			log.warn("Failed to close routing pool",e);
+		}
+	}
+	private void checkClosed()throws SQLException {
+		if(primary.isClosed())
+			throw new SQLException("DataSource has closed");
+	}
+
+	//select replica by balance policy,null if in read-your-writes window or none ready
+	private Replica selectReplica() {
+		if(readYourWritesWindow>0 && currentTimeMillis()-lastWriteTime.get()[0]<readYourWritesWindow)
+			return null;
+
+		Replica selected=null;
+		double selectedLoad=0;
+		int start=replicaCursor.getAndIncrement()&Integer.MAX_VALUE;
+		for(int i=0;i<replicas.length;i++){
+			Replica replica=replicas[(start+i)%replicas.length];
+			ConnectionPool pool=replica.ds.getPool();
+			if(pool==null||pool.isShutdown()||!pool.isReady())continue;
+			double load=latencyBalance?replica.getHoldTime(nanoTime()):replica.usingRatio(pool);
+			if(selected==null||load<(latencyBalance?selectedLoad*LATENCY_TIE_RATIO:selectedLoad)){
+				selected=replica;
+				selectedLoad=load;
+			}
+		}
+		return selected;
+	}
+
+	static final class Replica {
+		//average hold time halves in this time without new samples,so a slow replica is picked again after recovered
+		static final long HOLD_TIME_HALF_LIFE=SECONDS.toNanos(5);
+		final BeeDataSource ds;
+		private volatile long holdTimeNanos;//moving average of connection hold time
+		private volatile long recordTimeNanos;//time of last sample
+
+		Replica(BeeDataSource ds){
+			this.ds=ds;
+		}
+		double usingRatio(ConnectionPool pool){
+			if(!(pool instanceof ConnectionPoolJMXBean))return 0;
+			ConnectionPoolJMXBean bean=(ConnectionPoolJMXBean)pool;
+			return (double)bean.getConnUsingSize()/Math.max(1,bean.getPoolMaxSize());
+		}
+		//average hold time decayed by time passed from last sample
+		long getHoldTime(long currentNanos){
+			long avg=holdTimeNanos;
+			if(avg==0)return 0;
+			long elapsed=currentNanos-recordTimeNanos;
+			if(elapsed<=0)return avg;
+			return (long)(avg*Math.pow(0.5,(double)elapsed/HOLD_TIME_HALF_LIFE));
+		}
+		void recordHoldTime(long holdTime,long currentNanos){
+			long avg=getHoldTime(currentNanos);
+			holdTimeNanos=avg==0?holdTime:avg+(holdTime-avg)/8;
+			recordTimeNanos=currentNanos;
+		}
+	}
+
+	/**
+	 * lazy connection,session attributes set before physical connection borrowed are applied on it
+	 */
+	final class RoutingConnectionHandler implements InvocationHandler {
+		private Connection target;
+		private Replica replica;//null when target from primary
+		private long borrowTime;
+		private boolean closed;
+		private Boolean readOnly;
+		private Boolean autoCommit;
+		private Integer transactionIsolation;
+
+		public Object invoke(Object proxy,Method method,Object[] args) throws Throwable {
+			String name=method.getName();
+			if("equals".equals(name))return proxy==args[0];
+			if("hashCode".equals(name))return System.identityHashCode(proxy);
+			if("toString".equals(name))return "Routing connection["+(target!=null?target.toString():"not borrowed")+"]";
+			if("isClosed".equals(name))return closed;
+			if("close".equals(name)){
+				close();
+				return null;
+			}
+			if(closed)throw new SQLException("Connection has been closed");
+
+			if(target==null){
+				if("setReadOnly".equals(name)){
+					readOnly=(Boolean)args[0];
+					return null;
+				}else if("isReadOnly".equals(name)){
+					return readOnly!=null?readOnly:primary.isDefaultReadOnly();
+				}else if("setAutoCommit".equals(name)){
+					autoCommit=(Boolean)args[0];
+					return null;
+				}else if("getAutoCommit".equals(name)){
+					return autoCommit!=null?autoCommit:primary.isDefaultAutoCommit();
+				}else if("setTransactionIsolation".equals(name)){
+					transactionIsolation=(Integer)args[0];
+					return null;
+				}else if("getTransactionIsolation".equals(name)){
+					return transactionIsolation!=null?transactionIsolation:primary.getDefaultTransactionIsolationCode();
+				}else if("commit".equals(name)||("rollback".equals(name)&&args==null)||"clearWarnings".equals(name)){
+					return null;//nothing to commit or clear
+				}else if("getWarnings".equals(name)){
+					return null;
+				}
+				borrowTarget();
+			}
+
+			try {
+				return method.invoke(target,args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+		private void borrowTarget()throws SQLException {
+			if(readOnly!=null && readOnly){
+				replica=selectReplica();
+				if(replica!=null){
+					try {
+						target=replica.ds.getConnection();
+					} catch (SQLException e) {
+						replica=null;
+						log.warn("Failed to borrow connection from replica,read on primary",e);
+					}
+				}
+			}
+			if(target==null)target=primary.getConnection();
+			borrowTime=nanoTime();
+			try {
+				if(readOnly!=null)target.setReadOnly(readOnly);
+				if(autoCommit!=null)target.setAutoCommit(autoCommit);
+				if(transactionIsolation!=null)target.setTransactionIsolation(transactionIsolation);
+			} catch (SQLException e) {
+				Connection failed=target;
+				target=null;
+				replica=null;
+				failed.close();
+				throw e;
+			}
+		}
+		private void close()throws SQLException {
+			if(closed)return;
+			closed=true;
+			if(target==null)return;
+			if(replica!=null){
+				long currentNanos=nanoTime();
+				replica.recordHoldTime(currentNanos-borrowTime,currentNanos);
+			}else if(readOnly==null||!readOnly)
+				lastWriteTime.get()[0]=currentTimeMillis();
+			target.close();
+		}
+	}
+
+	public PrintWriter getLogWriter() throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException("Not supported");
+	}
+	public void setLoginTimeout(int seconds) throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public int getLoginTimeout() throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+	public <T> T unwrap(Class<T> iface) throws SQLException{
+		String message="Wrapped object is not an instance of "+iface;
+		if(iface.isInstance(this))
+			return (T)this;
+		else
+			throw new SQLException(message);
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+import cn.beecp.pool.ConnectionBudget;
+import cn.beecp.pool.ConnectionPool;
+import cn.beecp.pool.ConnectionPoolJMXBean;
+import cn.beecp.pool.SharedPoolThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+
+import static cn.beecp.util.BeecpUtil.isNullText;
+
+/**
+ * Sharding DataSource over some shard pools,a connection is borrowed from the shard routed by a shard key,
+ * which is bound on current thread before 'getConnection()' or passed to 'getConnection(shardKey)'.
+ *
+ * Shard pools share threads(timer,connection creation,network timeout and exit hook),so threads do not grow
+ * with shard count,and their connections can be limited
+ * by a global budget,a shard short of budget takes it by closing an idle connection of other shard.
+ * Metrics of every shard are available from its pool monitor.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class BeeShardingDataSource implements DataSource {
+
+	/**
+	 * route a shard key to a shard index
+	 */
+	public interface ShardRouter {
+		int route(Object shardKey,int shardSize);
+	}
+
+	//default router,shard index is hash code of key mod shard size
+	private static final ShardRouter HashShardRouter=new ShardRouter(){
+		public int route(Object shardKey,int shardSize){
+			int index=shardKey.hashCode()%shardSize;
+			return index<0?index+shardSize:index;
+		}
+	};
+
+	private static final Logger log = LoggerFactory.getLogger(BeeShardingDataSource.class);
+	private final BeeDataSource[] shards;
+	private final ConnectionBudget connectionBudget;
+	private final SharedPoolThreads sharedThreads;
+	private final ThreadLocal<Object> shardKeyLocal=new ThreadLocal<Object>();
+	private volatile ShardRouter shardRouter=HashShardRouter;
+
+	/**
+	 * constructor,shard pools are created with configurations
+	 *
+	 * @param shardConfigs configurations of shard pools
+	 * @param maxTotalActive max size of connections in all shards,zero means no global budget
+	 */
+	public BeeShardingDataSource(List<BeeDataSourceConfig> shardConfigs,int maxTotalActive){
+		if(shardConfigs==null||shardConfigs.isEmpty())
+			throw new BeeDataSourceConfigException("Shard configurations can't be empty");
+
+		connectionBudget=maxTotalActive>0?new ConnectionBudget(maxTotalActive):null;
+		sharedThreads=new SharedPoolThreads("ShardPool",Math.min(shardConfigs.size(),Runtime.getRuntime().availableProcessors()));
+
+		shards=new BeeDataSource[shardConfigs.size()];
+		boolean created=false;
+		try{
+			for(int i=0;i<shards.length;i++){
+				BeeDataSourceConfig config=copyConfig(shardConfigs.get(i));//configurations of caller are not changed
+				if(isNullText(config.getPoolName()))config.setPoolName("ShardPool-"+i);
+				config.setSharedPoolThreads(sharedThreads);
+				config.setConnectionBudget(connectionBudget);
+				shards[i]=new BeeDataSource(config);
+			}
+			created=true;
+		}finally{
+			if(!created)closeShards();
+		}
+	}
+
+	private static BeeDataSourceConfig copyConfig(BeeDataSourceConfig config){
+		try {
+			BeeDataSourceConfig copy=new BeeDataSourceConfig();
+			config.copyTo(copy);
+			return copy;
+		} catch (SQLException e) {
+			throw new BeeDataSourceConfigException("Failed to copy shard configuration",e);
+		}
+	}
+
+	public ShardRouter getShardRouter() {
+		return shardRouter;
+	}
+	public void setShardRouter(ShardRouter shardRouter) {
+		if(shardRouter!=null)
+		this.shardRouter = shardRouter;
+	}
+	public int getShardSize() {
+		return shards.length;
+	}
+	public BeeDataSource getShard(int index) {
+		return shards[index];
+	}
+	//monitor of shard pool for its metrics,null if pool not created
+	public ConnectionPoolJMXBean getShardMonitor(int index) {
+		ConnectionPool pool=shards[index].getPool();
+		return pool instanceof ConnectionPoolJMXBean?(ConnectionPoolJMXBean)pool:null;
+	}
+	//global budget of connections,null if not limited
+	public ConnectionBudget getConnectionBudget() {
+		return connectionBudget;
+	}
+
+	/**
+	 * bind a shard key on current thread for 'getConnection()'
+	 *
+	 * @param shardKey shard key
+	 */
+	public void bindShardKey(Object shardKey) {
+		if(shardKey==null)
+			shardKeyLocal.remove();
+		else
+			shardKeyLocal.set(shardKey);
+	}
+	public Object getShardKey() {
+		return shardKeyLocal.get();
+	}
+	public void unbindShardKey() {
+		shardKeyLocal.remove();
+	}
+
+	/**
+	 * borrow a connection from the shard routed by shard key bound on current thread
+	 *
+	 * @return connection of shard
+	 * @throws SQLException if no shard key bound or failed to borrow
+	 */
+	public Connection getConnection() throws SQLException {
+		Object shardKey=shardKeyLocal.get();
+		if(shardKey==null)throw new SQLException("No shard key bound on current thread");
+		return getConnection(shardKey);
+	}
+
+	/**
+	 * borrow a connection from the shard routed by shard key
+	 *
+	 * @param shardKey shard key
+	 * @return connection of shard
+	 * @throws SQLException if key routed to no shard or failed to borrow
+	 */
+	public Connection getConnection(Object shardKey) throws SQLException {
+		if(shardKey==null)throw new SQLException("Shard key can't be null");
+		return shards[getShardIndex(shardKey)].getConnection();
+	}
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLException("Not support");
+	}
+	public int getShardIndex(Object shardKey) throws SQLException {
+		int index=shardRouter.route(shardKey,shards.length);
+		if(index<0||index>=shards.length)
+			throw new SQLException("Shard key["+shardKey+"]routed to invalid shard index:"+index);
+		return index;
+	}
+
+	public void close()throws SQLException {
+		closeShards();
+	}
+	public boolean isClosed()throws SQLException {
+		return sharedThreads.isShutdown();
+	}
+	private void closeShards() {
+		for(BeeDataSource shard:shards){
+			try {
+				if(shard!=null && !shard.isClosed())shard.close();
+			} catch (SQLException e) {
+				log.warn("Failed to close shard pool",e);
+			}
+		}
+		sharedThreads.shutdown();
+	}
+
+	public PrintWriter getLogWriter() throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException("Not supported");
+	}
+	public void setLoginTimeout(int seconds) throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public int getLoginTimeout() throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+	public <T> T unwrap(Class<T> iface) throws SQLException{
+		String message="Wrapped object is not an instance of "+iface;
+		if(iface.isInstance(this))
+			return iface.cast(this);
+		else
+			throw new SQLException(message);
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+import cn.beecp.pool.ConnectionPool;
+import cn.beecp.pool.ConnectionPoolJMXBean;
+import cn.beecp.pool.DataSourceConnectionFactory;
+import cn.beecp.pool.DriverConnectionFactory;
+import cn.beecp.pool.SharedPoolThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keyed pools of 'getConnection(username,password)',one pool is created lazily for every credential
+ * and the least recently used idle one is closed when pools reach 'credentialPoolSize'.
+ *
+ * Credential pools start with no connection,share connection budget of data source,so 'maxActive' caps
+ * connections of all pools and idle connections of cold credentials are closed for busy ones.
+ * They share threads(timer,connection creation,network timeout and exit hook).
+ * Pools are keyed by username and password is checked by its salted digest,a new password of same user
+ * replaces the old pool when it is idle.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class CredentialPools {
+	private static final Logger log = LoggerFactory.getLogger(CredentialPools.class);
+	private static final Charset UTF8=Charset.forName("UTF-8");
+	private final BeeDataSource ds;
+	private final byte[] salt=new byte[16];
+	private final int maxSize;
+	private final LinkedHashMap<String,PoolEntry> poolMap=new LinkedHashMap<String,PoolEntry>(16,0.75f,true);//access order
+	private final SharedPoolThreads sharedThreads;
+	private boolean closed;//guarded by this
+
+	CredentialPools(BeeDataSource ds){
+		this.ds=ds;
+		this.maxSize=ds.getCredentialPoolSize();
+		this.sharedThreads=new SharedPoolThreads("CredentialPool",1);
+		new SecureRandom().nextBytes(salt);
+	}
+
+	Connection getConnection(String username,String password)throws SQLException{
+		PoolEntry entry=acquire(username,password);
+		try{
+			return getPool(entry,username,password).getConnection();
+		}finally{
+			release(entry);
+		}
+	}
+	synchronized int size(){
+		return poolMap.size();
+	}
+
+	//reference entry of credential under lock,so it is not evicted before borrowed connection counted in using
+	private synchronized PoolEntry acquire(String username,String password)throws SQLException{
+		if(closed)throw new SQLException("DataSource has closed");
+		String key=String.valueOf(username);
+		byte[] passwordDigest=digest(password);
+		PoolEntry entry=poolMap.get(key);
+		if(entry!=null && !MessageDigest.isEqual(entry.passwordDigest,passwordDigest)){
+			if(!isIdle(entry))
+				throw new SQLException("Password not matched with credential pool in using of user:"+username);
+			poolMap.remove(key);//password changed,replace idle pool
+			shutdownByAsyn(entry.pool);
+			entry=null;
+		}
+		if(entry==null){
+			if(poolMap.size()>=maxSize && !closeEldestIdlePool())
+				throw new SQLException("Credential pools reached max size:"+maxSize+",all are in using");
+			entry=new PoolEntry(key,passwordDigest);
+			poolMap.put(key,entry);
+		}
+		entry.refCount++;
+		return entry;
+	}
+	//salted digest of password,so plain password is not kept in keys
+	private byte[] digest(String password)throws SQLException{
+		try{
+			MessageDigest md=MessageDigest.getInstance("SHA-256");
+			md.update(salt);
+			if(password!=null){
+				md.update((byte)1);
+				md.update(password.getBytes(UTF8));
+			}
+			return md.digest();
+		}catch(NoSuchAlgorithmException e){
+			throw new SQLException("Failed to digest password",e);
+		}
+	}
+	private synchronized void release(PoolEntry entry){
+		entry.refCount--;
+		if(entry.pool==null && entry.refCount==0 && poolMap.get(entry.key)==entry)
+			poolMap.remove(entry.key);//pool creation failed
+	}
+	//pool is created out of global lock,other credentials are not blocked by it
+	private ConnectionPool getPool(PoolEntry entry,String username,String password)throws SQLException{
+		ConnectionPool pool=entry.pool;
+		if(pool!=null)return pool;
+		synchronized(entry){
+			if(entry.pool==null){
+				BeeDataSourceConfig config=ds.copyForCredential(username,password,createFactory(username,password));
+				config.setSharedPoolThreads(sharedThreads);
+				pool=BeeDataSource.createPool(config);
+				synchronized(this){
+					if(!closed)entry.pool=pool;
+				}
+				if(entry.pool==null){
+					pool.shutdown();
+					throw new SQLException("DataSource has closed");
+				}
+			}
+			return entry.pool;
+		}
+	}
+	//close least recently used pool without reference and using connection
+	private boolean closeEldestIdlePool(){
+		Iterator<PoolEntry> iterator=poolMap.values().iterator();
+		while(iterator.hasNext()){
+			PoolEntry entry=iterator.next();
+			if(entry.pool==null||!isIdle(entry))continue;
+			iterator.remove();
+			shutdownByAsyn(entry.pool);
+			return true;
+		}
+		return false;
+	}
+	//no reference and using connection,guarded by this
+	private static boolean isIdle(PoolEntry entry){
+		if(entry.refCount>0)return false;
+		ConnectionPool pool=entry.pool;
+		return !(pool instanceof ConnectionPoolJMXBean && ((ConnectionPoolJMXBean)pool).getConnUsingSize()>0);
+	}
+	//shutdown of removed pool runs on a new thread
+	private static void shutdownByAsyn(final ConnectionPool pool){
+		if(pool==null)return;
+		Thread shutdownThread=new Thread("CredentialPoolShutdown"){
+			public void run(){
+				pool.shutdown();
+			}
+		};
+		shutdownThread.setDaemon(true);
+		shutdownThread.start();
+	}
+	private ConnectionFactory createFactory(String username,String password)throws SQLException{
+		ConnectionFactory factory=ds.getConnectionFactory();
+		if(factory instanceof DriverConnectionFactory)
+			return ((DriverConnectionFactory)factory).withCredential(username,password);
+		if(factory instanceof DataSourceConnectionFactory)
+			return ((DataSourceConnectionFactory)factory).withCredential(username,password);
+		throw new SQLException("Connection factory["+factory.getClass().getName()+"]not support other credential");
+	}
+
+	void close(){
+		PoolEntry[] entries;
+		synchronized(this){
+			closed=true;
+			entries=poolMap.values().toArray(new PoolEntry[poolMap.size()]);
+			poolMap.clear();
+		}
+		for(PoolEntry entry:entries){
+			try {
+				if(entry.pool!=null)entry.pool.shutdown();
+			} catch (Throwable e) {
+				log.warn("Failed to close credential pool",e);
+			}
+		}
+		sharedThreads.shutdown();
+	}
+
+	//pool of a credential,referenced by borrowers in 'getConnection'(guarded by CredentialPools)
+	private static final class PoolEntry {
+		final String key;//username
+		final byte[] passwordDigest;
+		volatile ConnectionPool pool;
+		int refCount;
+
+		PoolEntry(String key,byte[] passwordDigest){
+			this.key=key;
+			this.passwordDigest=passwordDigest;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+import java.sql.SQLException;
+
+/**
+ * Empty implementation of pool event listener,sub class only override interested events
+ * 
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public abstract class PoolEventAdapter implements PoolEventListener {
+	public void onBorrow(String poolName,int path,long waitNanos,SQLException cause){}
+	public void onReturn(String poolName,long holdNanos){}
+	public void onConnectionCreate(String poolName,long tookNanos,SQLException cause){}
+	public void onConnectionClose(String poolName,String reason){}
+	public void onConnectionTest(String poolName,long tookNanos,boolean active){}
+	public void onStatementPrepare(String poolName,String sql,long tookNanos,boolean cacheHit){}
+	public void onStatementExecute(String poolName,long tookNanos){}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+import java.sql.SQLException;
+
+/**
+ * Pool event listener,called on pool working threads,so implementation
+ * should be fast(for example:commit an event to JDK Flight Recorder),
+ * only the types set in 'poolEventTypes' are delivered.
+ * 
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public interface PoolEventListener {
+
+	//borrow path:hit the last used connection of borrower thread
+	int PATH_THREAD_LOCAL=1;
+
+	//borrow path:got an idle connection by searching pool
+	int PATH_SEARCH=2;
+
+	//borrow path:created a new connection
+	int PATH_CREATE=3;
+
+	//borrow path:got a connection transferred from other borrower or creation thread
+	int PATH_TRANSFER=4;
+
+	//borrow end,cause is null when success
+	void onBorrow(String poolName,int path,long waitNanos,SQLException cause);
+
+	//connection returned to pool by borrower
+	void onReturn(String poolName,long holdNanos);
+
+	//physical connection created,cause is null when success
+	void onConnectionCreate(String poolName,long tookNanos,SQLException cause);
+
+	//physical connection closed
+	void onConnectionClose(String poolName,String reason);
+
+	//connection test end
+	void onConnectionTest(String poolName,long tookNanos,boolean active);
+
+	//statement prepared,cacheHit is true when got from statement cache
+	void onStatementPrepare(String poolName,String sql,long tookNanos,boolean cacheHit);
+
+	//statement executed
+	void onStatementExecute(String poolName,long tookNanos);
+
+}
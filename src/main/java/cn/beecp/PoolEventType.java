@@ -0,0 +1,81 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+/**
+ * Pool event type,each type can be enabled separately
+ *
+ * @author Chris.Liao
+ */
+
+public final class PoolEventType {
+
+    public final static String EVENT_BORROW = "borrow";
+
+    public final static String EVENT_RETURN = "return";
+
+    public final static String EVENT_CREATE = "create";
+
+    public final static String EVENT_CLOSE = "close";
+
+    public final static String EVENT_TEST = "test";
+
+    public final static String EVENT_PREPARE = "prepare";
+
+    public final static String EVENT_EXECUTE = "execute";
+
+    public final static String EVENT_TYPE_LIST = new StringBuilder()
+            .append(EVENT_BORROW).append(",")
+            .append(EVENT_RETURN).append(",")
+            .append(EVENT_CREATE).append(",")
+            .append(EVENT_CLOSE).append(",")
+            .append(EVENT_TEST).append(",")
+            .append(EVENT_PREPARE).append(",")
+            .append(EVENT_EXECUTE).toString();
+
+    public final static int CODE_BORROW = 1;
+
+    public final static int CODE_RETURN = 1 << 1;
+
+    public final static int CODE_CREATE = 1 << 2;
+
+    public final static int CODE_CLOSE = 1 << 3;
+
+    public final static int CODE_TEST = 1 << 4;
+
+    public final static int CODE_PREPARE = 1 << 5;
+
+    public final static int CODE_EXECUTE = 1 << 6;
+
+    public final static int nameToCode(String name) {
+        if (EVENT_BORROW.equalsIgnoreCase(name))
+            return CODE_BORROW;
+        else if (EVENT_RETURN.equalsIgnoreCase(name))
+            return CODE_RETURN;
+        else if (EVENT_CREATE.equalsIgnoreCase(name))
+            return CODE_CREATE;
+        else if (EVENT_CLOSE.equalsIgnoreCase(name))
+            return CODE_CLOSE;
+        else if (EVENT_TEST.equalsIgnoreCase(name))
+            return CODE_TEST;
+        else if (EVENT_PREPARE.equalsIgnoreCase(name))
+            return CODE_PREPARE;
+        else if (EVENT_EXECUTE.equalsIgnoreCase(name))
+            return CODE_EXECUTE;
+        else
+            return -999;
+    }
+}
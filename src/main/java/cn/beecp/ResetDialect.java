@@ -0,0 +1,58 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Database dialect to reset session of raw connection on return in fewer round trips,
+ * built-in dialects are picked by driver when not set(MySQL after probe on first connection,PostgreSQL),
+ * otherwise changed attributes are reset by JDBC methods one by one.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public interface ResetDialect {
+
+	//index of changed indicator:autoCommit
+	int AUTO_COMMIT=0;
+
+	//index of changed indicator:transaction isolation
+	int TRANSACTION_ISOLATION=1;
+
+	//index of changed indicator:readOnly
+	int READ_ONLY=2;
+
+	//index of changed indicator:catalog
+	int CATALOG=3;
+
+	//index of changed indicator:schema
+	int SCHEMA=4;
+
+	/**
+	 * reset raw connection to default attributes,network timeout and warnings are reset by pool
+	 *
+	 * @param con raw connection
+	 * @param rollback true,uncommitted transaction need rollback
+	 * @param changed changed indicators of attributes(read only),index by above constants
+	 * @param config pool configuration with default attribute values
+	 * @return true,rollback and all changed attributes are reset;false,not handled and pool resets them
+	 * @throws SQLException reset error,connection will be abandoned
+	 */
+	boolean reset(Connection con,boolean rollback,boolean[] changed,BeeDataSourceConfig config)throws SQLException;
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+import java.sql.SQLException;
+
+/**
+ * Classifier of SQLExceptions thrown from pooled connections and their statements,
+ * connection is abandoned on return when a fatal exception occurred on it.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public interface SQLExceptionClassifier {
+
+	/**
+	 * called on borrower thread when SQLException thrown from JDBC proxy objects
+	 *
+	 * @param e exception thrown by driver
+	 * @return true,connection is broken and need be abandoned
+	 */
+	boolean isFatal(SQLException e);
+
+}
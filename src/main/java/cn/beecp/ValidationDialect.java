@@ -0,0 +1,41 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Database dialect to validate pooled raw connections in one lightweight round trip,
+ * built-in dialects are picked by driver when not set(MySQL ping,PostgreSQL empty query),
+ * otherwise 'Connection.isValid' or test sql is used.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public interface ValidationDialect {
+
+	/**
+	 * validate raw connection,transaction state of connection should not be changed
+	 *
+	 * @param con raw connection
+	 * @param timeout seconds to wait validation
+	 * @return true,connection is alive
+	 * @throws SQLException validation error
+	 */
+	boolean isAlive(Connection con,int timeout)throws SQLException;
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+/**
+ * Workload group of borrowers on current thread,a pool configured with 'workloadGroups' counts borrowed
+ * connections to the group and serves its minimum and weighted share,borrowers without group belong to
+ * the first configured group.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class WorkloadGroup {
+	private static final ThreadLocal<String> CurrentGroup=new ThreadLocal<String>();
+
+	private WorkloadGroup(){}
+
+	/**
+	 * bind a group on current thread for later borrowing
+	 *
+	 * @param group group name in 'workloadGroups'
+	 */
+	public static void bind(String group){
+		if(group==null)
+			CurrentGroup.remove();
+		else
+			CurrentGroup.set(group);
+	}
+	public static String get(){
+		return CurrentGroup.get();
+	}
+	public static void unbind(){
+		CurrentGroup.remove();
+	}
+}
@@ -24,5 +24,8 @@ package cn.beecp.pool;
 class Borrower {
 	volatile Object state;
 	PooledConnection lastUsedConn;
+	int path;//borrow path,refer to PoolEventListener
+	int groupIndex=-1;//workload group bound on thread
+	boolean groupTaken;//one using connection counted to group for this borrow
 	Thread thread=Thread.currentThread();
 }
\ No newline at end of file
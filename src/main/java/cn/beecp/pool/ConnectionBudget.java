@@ -0,0 +1,100 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection count budget shared by some pools,a pool takes a permit before creating a connection and
+ * gives it back after the connection removed.When no permit left,an idle connection of another pool over
+ * its min idle size is closed to free one,so busy pools take connections from quiet ones.
+ *
+ * @author Chris.liao
+ * @version 1.0
+ */
+public final class ConnectionBudget {
+
+	/**
+	 * max count of connections in all pools
+	 */
+	private final int size;
+
+	/**
+	 * count of connections created or in creating
+	 */
+	private final AtomicInteger usedSize=new AtomicInteger(0);
+
+	/**
+	 * pools sharing this budget
+	 */
+	private final CopyOnWriteArrayList<FastConnectionPool> poolList=new CopyOnWriteArrayList<FastConnectionPool>();
+
+	//Constructor
+	public ConnectionBudget(int size){
+		if(size<=0)throw new IllegalArgumentException("Budget size must be greater than zero");
+		this.size=size;
+	}
+	public int getSize(){
+		return size;
+	}
+	public int getUsedSize(){
+		return usedSize.get();
+	}
+	//count of pools sharing this budget
+	public int getPoolSize(){
+		return poolList.size();
+	}
+
+	void register(FastConnectionPool pool){
+		poolList.addIfAbsent(pool);
+	}
+	void unregister(FastConnectionPool pool){
+		poolList.remove(pool);
+	}
+
+	//take a permit for a creation,reclaim one from idle connections of other pools when exhausted
+	boolean tryAcquire(FastConnectionPool requester){
+		if(tryAcquire())return true;
+		for(FastConnectionPool pool:poolList){
+			if(pool!=requester && pool.closeIdleForBudget() && tryAcquire())
+				return true;
+		}
+		return false;
+	}
+	//true when budget exhausted and borrowers of other pool are waiting for it
+	boolean isStarved(FastConnectionPool releaser){
+		if(usedSize.get()<size)return false;
+		for(FastConnectionPool pool:poolList){
+			if(pool!=releaser && pool.isWaitingForBudget())return true;
+		}
+		return false;
+	}
+	private boolean tryAcquire(){
+		while(true){
+			int used=usedSize.get();
+			if(used>=size)return false;
+			if(usedSize.compareAndSet(used,used+1))return true;
+		}
+	}
+	//give back permit of a removed connection or failed creation,a pool with waiters is notified to use it
+	void release(){
+		usedSize.decrementAndGet();
+		for(FastConnectionPool pool:poolList){
+			if(pool.onBudgetReleased())break;
+		}
+	}
+}
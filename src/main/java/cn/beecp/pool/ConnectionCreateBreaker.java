@@ -0,0 +1,89 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Circuit breaker on connection creation,it opens after continuous failures and rejects
+ * creation with last error until backoff time passed,then one creation is allowed as probe.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class ConnectionCreateBreaker {
+	private static final int STATE_CLOSED=0;
+	private static final int STATE_OPEN=1;
+	private static final int STATE_HALF_OPEN=2;
+
+	private final int failThreshold;
+	private final long initBackoff;//milliseconds
+	private final long maxBackoff;//milliseconds
+	private final AtomicInteger state=new AtomicInteger(STATE_CLOSED);
+	private final AtomicInteger failCount=new AtomicInteger(0);
+	private volatile long backoff;
+	private volatile long openUntil;
+	private volatile SQLException lastError;
+
+	ConnectionCreateBreaker(int failThreshold,long initBackoff,long maxBackoff) {
+		this.failThreshold=failThreshold;
+		this.initBackoff=initBackoff;
+		this.maxBackoff=maxBackoff;
+		this.backoff=initBackoff;
+	}
+
+	boolean isOpen(){
+		return state.get()!=STATE_CLOSED;
+	}
+
+	//creation allowed:closed,or open and time to probe
+	boolean isAvailable(){
+		int curState=state.get();
+		return curState==STATE_CLOSED || (curState==STATE_OPEN && currentTimeMillis()>=openUntil);
+	}
+
+	//throw last error when breaker is open and not time to probe
+	void beforeCreate()throws SQLException{
+		int curState=state.get();
+		if(curState==STATE_CLOSED)return;
+		if(curState==STATE_OPEN && currentTimeMillis()>=openUntil && state.compareAndSet(STATE_OPEN,STATE_HALF_OPEN))return;
+
+		SQLException e=lastError;
+		throw new SQLException("Connection creation rejected by open breaker,last error:"+e.getMessage(),e.getSQLState(),e.getErrorCode(),e);
+	}
+	void onSuccess(){
+		if(failCount.get()!=0)failCount.set(0);
+		if(state.get()!=STATE_CLOSED){
+			backoff=initBackoff;
+			state.set(STATE_CLOSED);
+		}
+	}
+	//any failure(include runtime exception) resolves the probe,otherwise breaker stays in half open
+	void onFailure(Throwable e){
+		lastError=(e instanceof SQLException)?(SQLException)e:new SQLException(e);
+		if(state.get()==STATE_HALF_OPEN){//probe failed
+			backoff=Math.min(backoff*2,maxBackoff);
+			openUntil=currentTimeMillis()+backoff;
+			state.set(STATE_OPEN);
+		}else if(failCount.incrementAndGet()>=failThreshold){
+			openUntil=currentTimeMillis()+backoff;
+			state.compareAndSet(STATE_CLOSED,STATE_OPEN);
+		}
+	}
+}
@@ -60,5 +60,24 @@ public interface ConnectionPool {
 	 */
 	boolean isShutdown();
 
+	/**
+	 * is pool ready
+	 * @return true,initial connections have been created or pool has connected database once
+	 */
+	boolean isReady();
+
+	/**
+	 * change max size of pool,idle connections over new size are closed at once and
+	 * using connections over new size are closed on return
+	 * @param size new max size
+	 */
+	void setPoolMaxSize(int size);
+
+	/**
+	 * change concurrent size of borrowers
+	 * @param size new concurrent size,not greater than pool max size
+	 */
+	void setBorrowConcurrentSize(int size);
+
 }
 	
@@ -15,6 +15,8 @@
  */
 package cn.beecp.pool;
 
+import java.io.IOException;
+
 /**
  *  Pool JMX Bean interface
  *
@@ -33,6 +35,12 @@ public interface ConnectionPoolJMXBean {
 	 * @param force true close connection immediately
 	 */
 	void reset(boolean force);
+
+	/**
+	 * replace current connections gradually,idle ones are closed in retire budget of every second
+	 * and using ones are closed on return,borrowers are served during reset
+	 */
+	void rollingReset();
 	
 	//return connection total size in pool
 	int getConnTotalSize();
@@ -49,5 +57,25 @@ public interface ConnectionPoolJMXBean {
 
 	int getTransferWaitingSize();
 
+	//return true when initial connections have been created
+	boolean isReady();
+
+	int getPoolMaxSize();
+
+	//change max size of pool,shrink pool by closing idle connections and using connections on return
+	void setPoolMaxSize(int size);
+
+	int getBorrowConcurrentSize();
+
+	//change concurrent size of borrowers
+	void setBorrowConcurrentSize(int size);
+
+	/**
+	 * write recent pool events to file,decode it with 'PoolEventRecorder'
+	 * @param fileName dump file name
+	 * @throws IOException recorder not enabled or failed to write file
+	 */
+	void dumpRecentEvents(String fileName)throws IOException;
+
 }
 
@@ -0,0 +1,88 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.List;
+
+/**
+ * Hashed timer wheel of pooled connections,every connection is linked into the bucket
+ * of its next timeout check time,so each tick only visits connections of passed buckets.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class ConnectionTimerWheel {
+	private final long tickTime;//milliseconds
+	private final int mask;
+	private final PooledConnection[] buckets;
+	private long lastTick;
+
+	ConnectionTimerWheel(int bucketSize,long tickTime,long currentTime) {
+		int capacity=1;
+		while(capacity<bucketSize)capacity<<=1;
+		this.mask=capacity-1;
+		this.tickTime=tickTime;
+		this.buckets=new PooledConnection[capacity];
+		this.lastTick=currentTime/tickTime;
+	}
+
+	//link connection into bucket of deadline,a passed deadline will be checked at next tick
+	synchronized void schedule(PooledConnection pConn,long deadline){
+		unlink(pConn);
+		int index=(int)(Math.max(deadline/tickTime,lastTick)&mask);
+		PooledConnection head=buckets[index];
+		pConn.timerDeadline=deadline;
+		pConn.timerBucket=index;
+		pConn.timerPrev=null;
+		pConn.timerNext=head;
+		if(head!=null)head.timerPrev=pConn;
+		buckets[index]=pConn;
+	}
+	synchronized void cancel(PooledConnection pConn){
+		unlink(pConn);
+	}
+	private void unlink(PooledConnection pConn){
+		if(pConn.timerBucket<0)return;
+		PooledConnection prev=pConn.timerPrev;
+		PooledConnection next=pConn.timerNext;
+		if(prev!=null)
+			prev.timerNext=next;
+		else
+			buckets[pConn.timerBucket]=next;
+		if(next!=null)next.timerPrev=prev;
+		pConn.timerPrev=null;
+		pConn.timerNext=null;
+		pConn.timerBucket=-1;
+	}
+
+	//unlink connections reached deadline from buckets passed since last tick
+	synchronized void pollExpired(long currentTime,List<PooledConnection> expiredList){
+		long curTick=currentTime/tickTime;
+		long beginTick=Math.max(lastTick,curTick-mask);
+		for(long tick=beginTick;tick<=curTick;tick++){
+			PooledConnection pConn=buckets[(int)(tick&mask)];
+			while(pConn!=null){
+				PooledConnection next=pConn.timerNext;
+				if(pConn.timerDeadline<=currentTime){
+					unlink(pConn);
+					expiredList.add(pConn);
+				}
+				pConn=next;
+			}
+		}
+		lastTick=curTick;
+	}
+}
@@ -65,4 +65,9 @@ public class DataSourceConnectionFactory implements ConnectionFactory {
             return driverDataSource.getConnection();
         }
     }
+
+    //factory on same datasource with other credential
+    public DataSourceConnectionFactory withCredential(String username, String password) {
+        return new DataSourceConnectionFactory(driverDataSource, username, password);
+    }
 }
@@ -57,4 +57,15 @@ public final class DriverConnectionFactory implements ConnectionFactory{
 	public Connection create()throws SQLException{
 		return connectDriver.connect(connectURL,connectProperties);
 	}
+
+	//factory on same url with other credential
+	public DriverConnectionFactory withCredential(String username,String password){
+		Properties properties=new Properties();
+		properties.putAll(connectProperties);
+		properties.remove("user");
+		properties.remove("password");
+		if(username!=null)properties.put("user",username);
+		if(password!=null)properties.put("password",password);
+		return new DriverConnectionFactory(connectURL,connectDriver,properties);
+	}
 }
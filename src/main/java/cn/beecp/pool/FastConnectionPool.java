@@ -17,27 +17,38 @@ package cn.beecp.pool;
 
 import cn.beecp.BeeDataSourceConfig;
 import cn.beecp.ConnectionFactory;
+import cn.beecp.PoolEventListener;
+import cn.beecp.ResetDialect;
+import cn.beecp.SQLExceptionClassifier;
+import cn.beecp.ValidationDialect;
+import cn.beecp.WorkloadGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.ref.WeakReference;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.LockSupport;
 
 import static cn.beecp.pool.PoolExceptionList.*;
 import static cn.beecp.pool.PoolObjectsState.*;
+import static cn.beecp.pool.PoolEventRecorder.*;
+import static cn.beecp.PoolEventListener.*;
+import static cn.beecp.PoolEventType.*;
 import static cn.beecp.util.BeecpUtil.isNullText;
 import static cn.beecp.util.BeecpUtil.oclose;
 import static java.lang.System.currentTimeMillis;
@@ -52,35 +63,69 @@ import static java.util.concurrent.locks.LockSupport.*;
  * @version 1.0
  */
 public final class FastConnectionPool extends Thread implements ConnectionPool, ConnectionPoolJMXBean{
-	private int PoolMaxSize;
+	private volatile int PoolMaxSize;
+	private int PoolMinIdle;
 	private long DefaultMaxWaitNanos;//nanoseconds
 	private int ConUnCatchStateCode;
 	private String ConnectionTestSQL;//select
 	private int ConnectionTestTimeout;//seconds
 	private long ConnectionTestInterval;//milliseconds
+	private long BackgroundTestInterval;//milliseconds
+	private ThreadPoolExecutor backgroundTestExecutor;
+	private ThreadPoolExecutor resetExecutor;
+	private int FatalIdleAction;
+	private final AtomicLong lastFatalCheckTime=new AtomicLong(0);
+	private long IdleTimeout;//milliseconds
+	private long HoldTimeout;//milliseconds
+	private boolean MaxUsesInd;
+	private int MaxRetirePercent;
+	private final AtomicInteger retireBudget=new AtomicInteger(0);//retire count allowed in current tick
 	private ConnectionPoolHook exitHook;
 	private BeeDataSourceConfig poolConfig;
 
-	private Semaphore semaphore;
+	private PoolSemaphore semaphore;
+	private final Object resizeLock=new Object();
 	private TransferPolicy transferPolicy;
-	private ConnectionTestPolicy testPolicy;
+	private volatile ConnectionTestPolicy testPolicy;
 	private ConnectionFactory connFactory;
+	private int eventMask;
+	private PoolEventListener eventListener;
+	private PoolEventRecorder eventRecorder;
+	private ConnectionCreateBreaker createBreaker;
+	private SQLExceptionClassifier exceptionClassifier;
+	private volatile ResetDialect resetDialect;
+	private MultiHostConnectionFactory multiHostFactory;
+	private ConnectionBudget connBudget;
+	private WorkloadGroups workloadGroups;
+	private volatile boolean sessionStateCached;
+	private boolean borrowTraceInd;
+	private final AtomicInteger connIdIndex=new AtomicInteger(0);
 	private final Object connArrayLock =new Object();
+	private int creatingSize;//guarded by connArrayLock
+	private volatile boolean ready;
+	private volatile boolean initCreateDone;//background creation of initial connections ended
 	private final Object connNotifyLock =new Object();
 	private volatile PooledConnection[] connArray = new PooledConnection[0];
 	private final ConcurrentLinkedQueue<Borrower> waitQueue = new ConcurrentLinkedQueue<Borrower>();
 	private final ThreadLocal<WeakReference<Borrower>> threadLocal = new ThreadLocal<WeakReference<Borrower>>();
 	private ScheduledFuture<?> idleCheckSchFuture = null;
-	private ScheduledThreadPoolExecutor idleSchExecutor = new ScheduledThreadPoolExecutor(1,new PoolThreadThreadFactory("IdleConnectionScan"));
+	private ScheduledFuture<?> testSchFuture = null;
+	private ScheduledFuture<?> sizeSchFuture = null;
+	private ConnectionTimerWheel timerWheel;
+	private PoolSizeController sizeController;
+	private final ArrayList<PooledConnection> timerExpiredList=new ArrayList<PooledConnection>();
+	private ScheduledThreadPoolExecutor idleSchExecutor;
+	private SharedPoolThreads sharedThreads;//shared threads are not shutdown with pool
 
-	private int networkTimeout;
-	private boolean supportValidTest=true;
-	private boolean supportSchema=true;
-	private boolean supportNetworkTimeout=true;
-	private boolean supportQueryTimeout=true;
-	private boolean supportIsValidTested=false;
-	private ThreadPoolExecutor networkTimeoutExecutor = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(),
-			Runtime.getRuntime().availableProcessors(),15,SECONDS, new LinkedBlockingQueue<Runnable>(),new PoolThreadThreadFactory("networkTimeout"));
+	//driver capabilities,probed on first connection under probeLock and published by 'supportIsValidTested'
+	private final Object probeLock=new Object();
+	private volatile int networkTimeout;
+	private volatile boolean supportValidTest=true;
+	private volatile boolean supportSchema=true;
+	private volatile boolean supportNetworkTimeout=true;
+	private volatile boolean supportQueryTimeout=true;
+	private volatile boolean supportIsValidTested=false;
+	private ThreadPoolExecutor networkTimeoutExecutor;
 
 	static final class PoolThreadThreadFactory implements ThreadFactory {
 	    private String thName;
@@ -98,6 +143,12 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	private AtomicInteger poolState = new AtomicInteger(POOL_UNINIT);
 	private AtomicInteger createConnThreadState =new AtomicInteger(THREAD_WORKING);
 	private AtomicInteger needAddConnSize = new AtomicInteger(0);
+	private AtomicInteger needReplaceConnSize = new AtomicInteger(0);
+	private final Runnable createTask=new Runnable(){//creation task on shared threads
+		public void run(){
+			runCreateTask();
+		}
+	};
 	private static Logger log = LoggerFactory.getLogger(FastConnectionPool.class);
 	private static AtomicInteger PoolNameIndex = new AtomicInteger(1);
 	private static final long spinForTimeoutThreshold = 1000L;
@@ -111,6 +162,17 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	private static final String DESC_REMOVE_CLOSED="closed";
 	private static final String DESC_REMOVE_RESET="reset";
 	private static final String DESC_REMOVE_DESTROY="destroy";
+	private static final String DESC_REMOVE_SHRINK="shrink";
+	private static final String DESC_REMOVE_RETIRE="retire";
+	private static final String DESC_REMOVE_BROKEN="broken";
+	private static final String DESC_REMOVE_FAILOVER="failover";
+	private static final String DESC_REMOVE_REBALANCE="rebalance";
+	private static final String DESC_REMOVE_BUDGET="budget";
+	private static final int FATAL_IDLE_NONE=0;
+	private static final int FATAL_IDLE_TEST=1;
+	private static final int FATAL_IDLE_EVICT=2;
+	private static final int BORROW_RETURN_EVENT=CODE_BORROW|CODE_RETURN;
+	private static final int TIMER_WHEEL_SIZE=512;
 
 	/**
 	 * initialize pool with configuration
@@ -130,7 +192,20 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 			log.info("BeeCP({})starting....",poolName);
 
 			PoolMaxSize=poolConfig.getMaxActive();
+			PoolMinIdle=poolConfig.getMinIdle();
 			connFactory=poolConfig.getConnectionFactory();
+			if(connFactory instanceof MultiHostConnectionFactory)
+				multiHostFactory=(MultiHostConnectionFactory)connFactory;
+			if(poolConfig.getCreateBreakerThreshold()>0)
+				createBreaker=new ConnectionCreateBreaker(poolConfig.getCreateBreakerThreshold(),poolConfig.getCreateBreakerBackoff(),poolConfig.getCreateBreakerMaxBackoff());
+			exceptionClassifier=poolConfig.getSQLExceptionClassifier();
+			if(exceptionClassifier==null)
+				exceptionClassifier=new FatalSQLStateClassifier(poolConfig.getFatalSQLStates(),poolConfig.getFatalErrorCodes());
+			eventListener=poolConfig.getPoolEventListener();
+			eventMask=eventListener!=null?poolConfig.getPoolEventMask():0;
+			if(poolConfig.getEventRecorderSize()>0)
+				eventRecorder=new PoolEventRecorder(poolConfig.getEventRecorderSize());
+			borrowTraceInd=(eventMask&BORROW_RETURN_EVENT)!=0||eventRecorder!=null;
 			ConnectionTestSQL=poolConfig.getConnectionTestSQL();
 			ConnectionTestTimeout=poolConfig.getConnectionTestTimeout();
 			this.testPolicy= new SQLQueryTestPolicy(poolConfig.isDefaultAutoCommit());
@@ -139,7 +214,38 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 
 			DefaultMaxWaitNanos=MILLISECONDS.toNanos(poolConfig.getMaxWait());
 			ConnectionTestInterval=poolConfig.getConnectionTestInterval();
-			createInitConnections(poolConfig.getInitialSize());
+			BackgroundTestInterval=poolConfig.getBackgroundTestInterval();
+			if("test".equals(poolConfig.getFatalErrorIdleAction()))
+				FatalIdleAction=FATAL_IDLE_TEST;
+			else if("evict".equals(poolConfig.getFatalErrorIdleAction()))
+				FatalIdleAction=FATAL_IDLE_EVICT;
+			else
+				FatalIdleAction=FATAL_IDLE_NONE;
+			IdleTimeout=poolConfig.getIdleTimeout();
+			HoldTimeout=poolConfig.getHoldTimeout();
+			MaxUsesInd=poolConfig.getMaxUsesPerConnection()>0;
+			MaxRetirePercent=poolConfig.getMaxRetirePercent();
+			timerWheel=new ConnectionTimerWheel(TIMER_WHEEL_SIZE,config.getIdleCheckTimeInterval(),currentTimeMillis());
+			connBudget=poolConfig.getConnectionBudget();
+			if(connBudget!=null)connBudget.register(this);
+			sharedThreads=poolConfig.getSharedPoolThreads();
+			if(sharedThreads!=null){
+				networkTimeoutExecutor=sharedThreads.getNetworkTimeoutExecutor();
+			}else{
+				networkTimeoutExecutor=new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(),
+						Runtime.getRuntime().availableProcessors(),15,SECONDS, new LinkedBlockingQueue<Runnable>(),new PoolThreadThreadFactory("networkTimeout"));
+				networkTimeoutExecutor.allowCoreThreadTimeOut(true);
+			}
+			if(!poolConfig.isAsyncInit()) {
+				try{
+					createInitConnections(poolConfig.getInitialSize());
+				}catch(Throwable e){//pool not started,not take part in budget any more
+					if(connBudget!=null)connBudget.unregister(this);
+					if(sharedThreads==null)networkTimeoutExecutor.shutdown();
+					throw e;
+				}
+				ready=true;
+			}
 
 			String mode;
 			if (poolConfig.isFairMode()) {
@@ -152,15 +258,49 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 				ConUnCatchStateCode = transferPolicy.getCheckStateCode();
 			}
 
-			exitHook = new ConnectionPoolHook();
-			Runtime.getRuntime().addShutdownHook(exitHook);
-			semaphore = new Semaphore(poolConfig.getBorrowConcurrentSize(), poolConfig.isFairMode());
-			networkTimeoutExecutor.allowCoreThreadTimeOut(true);
+			if(sharedThreads!=null){
+				sharedThreads.register(this);//closed by shared exit hook
+			}else{
+				exitHook = new ConnectionPoolHook();
+				Runtime.getRuntime().addShutdownHook(exitHook);
+			}
+			semaphore = new PoolSemaphore(poolConfig.getBorrowConcurrentSize(), poolConfig.isFairMode());
+			if(!isNullText(poolConfig.getWorkloadGroups()))
+				workloadGroups=new WorkloadGroups(poolConfig.getWorkloadGroups(),poolConfig.getBorrowConcurrentSize(),poolConfig.isFairMode());
+			if(sharedThreads!=null)
+				idleSchExecutor=sharedThreads.getTimerExecutor();
+			else
+				idleSchExecutor=new ScheduledThreadPoolExecutor(1,new PoolThreadThreadFactory("IdleConnectionScan"));
 			idleCheckSchFuture = idleSchExecutor.scheduleAtFixedRate(new Runnable() {
-				public void run() {// check idle connection
+				public void run() {// check timeout connections in timer wheel
 					closeIdleTimeoutConnection();
 				}
 			},config.getIdleCheckTimeInitDelay(),config.getIdleCheckTimeInterval(), TimeUnit.MILLISECONDS);
+			if(BackgroundTestInterval>0||FatalIdleAction!=FATAL_IDLE_NONE){
+				int testThreadSize=config.getBackgroundTestConcurrentSize();
+				backgroundTestExecutor=new ThreadPoolExecutor(testThreadSize,testThreadSize,15,SECONDS,new LinkedBlockingQueue<Runnable>(),new PoolThreadThreadFactory("BackgroundConnectionTest"));
+				backgroundTestExecutor.allowCoreThreadTimeOut(true);
+			}
+			if(config.isAsyncReset()){
+				int resetThreadSize=Runtime.getRuntime().availableProcessors();
+				resetExecutor=new ThreadPoolExecutor(resetThreadSize,resetThreadSize,15,SECONDS,new LinkedBlockingQueue<Runnable>(),new PoolThreadThreadFactory("ConnectionReset"));
+				resetExecutor.allowCoreThreadTimeOut(true);
+			}
+			if(BackgroundTestInterval>0){
+				testSchFuture=idleSchExecutor.scheduleAtFixedRate(new Runnable() {
+					public void run() {// test idle connections
+						testIdleConnections();
+					}
+				},BackgroundTestInterval/2,BackgroundTestInterval/2, TimeUnit.MILLISECONDS);
+			}
+			if(config.getAutoSizeInterval()>0){
+				sizeController=new PoolSizeController(Math.max(1,config.getMinIdle()),config.getMaxActive(),(int)(config.getAutoSizeInterval()/1000L));
+				sizeSchFuture=idleSchExecutor.scheduleAtFixedRate(new Runnable() {
+					public void run() {// sample load and adjust pool size
+						adjustPoolSize();
+					}
+				},1000L,1000L, TimeUnit.MILLISECONDS);
+			}
 
 			registerJMX();
 			log.info("BeeCP({})has startup{mode:{},init size:{},max size:{},concurrent size:{},max wait:{}ms,driver:{}}",
@@ -173,9 +313,14 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 					poolConfig.getDriverClassName());
 
 			poolState.set(POOL_NORMAL);
-			this.setDaemon(true);
-			this.setName("PooledConnectionAdd");
-			this.start();
+			if(sharedThreads!=null){
+				sharedThreads.getCreateExecutor().execute(createTask);
+			}else{
+				this.setDaemon(true);
+				this.setName("PooledConnectionAdd");
+				this.start();
+			}
+			if(poolConfig.isAsyncInit())createInitConnectionsByAsyn(poolConfig.getInitialSize());
 		} else {
 			throw new SQLException("Pool has initialized");
 		}
@@ -213,62 +358,167 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	ThreadPoolExecutor getNetworkTimeoutExecutor() {
 		return networkTimeoutExecutor;
 	}
+	ResetDialect getResetDialect() {
+		return resetDialect;
+	}
+	boolean isSessionStateCached() {
+		return sessionStateCached;
+	}
 	private boolean existBorrower() {
-		return poolConfig.getBorrowConcurrentSize()>semaphore.availablePermits()||semaphore.hasQueuedThreads();
+		return semaphore.getSize()>semaphore.availablePermits()||semaphore.hasQueuedThreads()
+				||(workloadGroups!=null && workloadGroups.existBorrower());
 	}
-	//create Pooled connection
+	//create Pooled connection,a slot is reserved in lock and raw connection is created out of lock
 	private PooledConnection createPooledConn(int connState) throws SQLException {
 		synchronized (connArrayLock) {
-			if (connArray.length < PoolMaxSize) {
-				Connection con= connFactory.create();
-				setDefaultOnRawConn(con);
-				PooledConnection pConn = new PooledConnection(con,connState,this,poolConfig);// add
-				PooledConnection[] arrayNew = new PooledConnection[connArray.length + 1];
-				System.arraycopy(connArray, 0, arrayNew, 0, connArray.length);
-				arrayNew[connArray.length] = pConn;// tail
-				connArray = arrayNew;
-				return pConn;
-			}else{
-				return null;
+			if (connArray.length + creatingSize >= PoolMaxSize) return null;
+			creatingSize++;
+		}
+		if(connBudget!=null && !connBudget.tryAcquire(this)){
+			synchronized (connArrayLock) {
+				creatingSize--;
 			}
+			return null;
+		}
+
+		Connection con=null;
+		PooledConnection pConn=null;
+		try {
+			int connId=connIdIndex.incrementAndGet();
+			con= createRawConn(connId);
+			boolean defaultApplied=setDefaultOnRawConn(con);
+			pConn = new PooledConnection(con,connId,connState,this,poolConfig);// add
+			if(!defaultApplied)pConn.loadCurState();
+		} finally {
+			if(pConn==null){//any failure(include runtime exception),give back reserved slot and budget
+				synchronized (connArrayLock) {
+					creatingSize--;
+				}
+				if(connBudget!=null)connBudget.release();
+				if(con!=null){
+					oclose(con);
+					onRawConnClosed(con);//give back count of its host
+				}
+			}
+		}
+
+		synchronized (connArrayLock) {
+			creatingSize--;
+			PooledConnection[] arrayNew = new PooledConnection[connArray.length + 1];
+			System.arraycopy(connArray, 0, arrayNew, 0, connArray.length);
+			arrayNew[connArray.length] = pConn;// tail
+			connArray = arrayNew;
+			scheduleTimeoutCheck(pConn,pConn.lastAccessTime);
+			if(!ready && initCreateDone)ready=true;//initial creation failed,ready on first connection
+			return pConn;
+		}
+	}
+
+	//create raw connection by factory
+	private Connection createRawConn(int connId) throws SQLException {
+		if(createBreaker==null)return createRawConnByFactory(connId);
+
+		createBreaker.beforeCreate();
+		try{
+			Connection con=createRawConnByFactory(connId);
+			createBreaker.onSuccess();
+			return con;
+		}catch(Throwable e){
+			createBreaker.onFailure(e);
+			throw e;
+		}
+	}
+	private Connection createRawConnByFactory(int connId) throws SQLException {
+		if((eventMask&CODE_CREATE)==0 && eventRecorder==null)return connFactory.create();
+
+		long beginTime=nanoTime();
+		try{
+			Connection con=connFactory.create();
+			long tookTime=nanoTime()-beginTime;
+			if((eventMask&CODE_CREATE)!=0)fireCreateEvent(tookTime,null);
+			if(eventRecorder!=null)eventRecorder.record(TYPE_CREATE,connId,0,tookTime);
+			return con;
+		}catch(SQLException e){
+			long tookTime=nanoTime()-beginTime;
+			if((eventMask&CODE_CREATE)!=0)fireCreateEvent(tookTime,e);
+			if(eventRecorder!=null)eventRecorder.record(TYPE_CREATE_FAIL,connId,0,tookTime);
+			throw e;
 		}
 	}
 
 	//remove Pooled connection
 	private void removePooledConn(PooledConnection pConn,String removeType) {
 		pConn.state=CONNECTION_CLOSED;
+		releaseGroup(pConn);
+		timerWheel.cancel(pConn);
 		pConn.closeRawConn();
+		if((eventMask&CODE_CLOSE)!=0)fireCloseEvent(removeType);
+		if(eventRecorder!=null)eventRecorder.recordRemove(pConn.id,removeType);
 		synchronized (connArrayLock) {
-			int oldLen=connArray.length;
-			PooledConnection[] arrayNew = new PooledConnection[oldLen - 1];
-			for (int i = 0; i < oldLen; i++) {
-				if (connArray[i] == pConn) {
-					System.arraycopy(connArray, i + 1, arrayNew, i, oldLen- i - 1);
-					break;
-				} else {
-					arrayNew[i] = connArray[i];
-				}
+			removeFromConnArray(pConn);
+		}
+	}
+	//remove connection on return when pool size is over max size after shrink
+	private boolean removeOnShrink(PooledConnection pConn) {
+		synchronized (connArrayLock) {
+			if (connArray.length <= PoolMaxSize) return false;
+			pConn.state=CONNECTION_CLOSED;
+			removeFromConnArray(pConn);
+		}
+		releaseGroup(pConn);
+		timerWheel.cancel(pConn);
+		pConn.closeRawConn();
+		if((eventMask&CODE_CLOSE)!=0)fireCloseEvent(DESC_REMOVE_SHRINK);
+		if(eventRecorder!=null)eventRecorder.recordRemove(pConn.id,DESC_REMOVE_SHRINK);
+		return true;
+	}
+	//remove connection reached life time or use count on return,it is delayed to next return when out of retire budget
+	private boolean retireOnReturn(PooledConnection pConn) {
+		if (retireBudget.getAndDecrement() <= 0) {
+			pConn.retireOnReturn = true;
+			return false;
+		}
+		removePooledConn(pConn, DESC_REMOVE_RETIRE);
+		tryToCreateNewConnByAsyn();
+		return true;
+	}
+	//guarded by connArrayLock
+	private void removeFromConnArray(PooledConnection pConn) {
+		int oldLen=connArray.length;
+		PooledConnection[] arrayNew = new PooledConnection[oldLen - 1];
+		for (int i = 0; i < oldLen; i++) {
+			if (connArray[i] == pConn) {
+				System.arraycopy(connArray, i + 1, arrayNew, i, oldLen- i - 1);
+				break;
+			} else {
+				arrayNew[i] = connArray[i];
 			}
-			connArray = arrayNew;
 		}
+		connArray = arrayNew;
+		if(connBudget!=null)connBudget.release();
 	}
 	//set default attribute on raw connection
-	private void setDefaultOnRawConn(Connection rawConn){
+	//return false,default autoCommit,isolation or readOnly not applied on raw connection
+	private boolean setDefaultOnRawConn(Connection rawConn){
+		boolean applied=true;
 		try{
 			rawConn.setAutoCommit(poolConfig.isDefaultAutoCommit());
 		}catch( Throwable e) {
+			applied=false;
 			log.warn("BeeCP({})failed to set default on executing 'setAutoCommit'",poolName);
 		}
 
 		try{
 			rawConn.setTransactionIsolation(poolConfig.getDefaultTransactionIsolationCode());
 		}catch( SQLException e) {
+			applied=false;
 			log.warn("BeeCP({}))failed to set default on executing to 'setTransactionIsolation'",poolName);
 		}
 
 		try{
 			rawConn.setReadOnly(poolConfig.isDefaultReadOnly());
 		}catch( Throwable e){
+			applied=false;
 			log.warn("BeeCP({}))failed to set default on executing to 'setReadOnly'",poolName);
 		}
 
@@ -305,7 +555,22 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 			}
 		}
 
-		if (!this.supportIsValidTested) {//test isValid
+		if (!this.supportIsValidTested) {//concurrent creation of initial connections wait for probe of first one
+			synchronized (probeLock) {
+				if (!this.supportIsValidTested) probeOnFirstConn(rawConn);
+			}
+		}
+		//for JDK1.7 end
+		return applied;
+	}
+	//pick reset dialect and test policy on first connection,guarded by probeLock
+	private void probeOnFirstConn(Connection rawConn){
+		resetDialect=poolConfig.getResetDialect();
+		if(resetDialect==null)resetDialect=ResetDialects.forConnection(rawConn);
+		sessionStateCached=poolConfig.isCacheSessionState() && !isExcludedFromStateCache(rawConn);
+		if (testValidationDialect(rawConn)) {//test validation dialect
+			this.supportIsValidTested = true;
+		} else {//test isValid
 			try {//test Connection.isValid
 				if(!rawConn.isValid(ConnectionTestTimeout))
 					throw new SQLException();
@@ -327,7 +592,34 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 				supportIsValidTested = true;
 			}
 		}
-		//for JDK1.7 end
+	}
+
+	//raw connection class matches one of excluded prefixes
+	private boolean isExcludedFromStateCache(Connection rawConn) {
+		String excludes=poolConfig.getCacheSessionStateExcludes();
+		if(isNullText(excludes))return false;
+		String className=rawConn.getClass().getName();
+		for(String prefix:excludes.split(",")){
+			prefix=prefix.trim();
+			if(prefix.length()>0 && className.startsWith(prefix))return true;
+		}
+		return false;
+	}
+	//test configured or built-in validation dialect on first connection,use it as test policy if passed
+	private boolean testValidationDialect(Connection rawConn) {
+		ValidationDialect dialect=poolConfig.getValidationDialect();
+		if(dialect==null)dialect=ValidationDialects.forConnection(rawConn);
+		if(dialect==null)return false;
+		try {
+			if(dialect.isAlive(rawConn,ConnectionTestTimeout)){
+				this.testPolicy = new DialectTestPolicy(dialect);
+				log.info("BeeCP({})validate connections with dialect:{}",poolName,dialect.getClass().getName());
+				return true;
+			}
+		} catch (Throwable e) {
+			log.warn("BeeCP({})driver not support validation dialect:{}",poolName,dialect.getClass().getName());
+		}
+		return false;
 	}
 
 	/**
@@ -337,12 +629,104 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	 *         false if false then close it
 	 */
 	private boolean testOnBorrow(PooledConnection pConn) {
-		if(currentTimeMillis()-pConn.lastAccessTime-ConnectionTestInterval<0 || testPolicy.isActive(pConn)) return true;
+		long currentTime=currentTimeMillis();
+		if(currentTime-pConn.lastAccessTime-ConnectionTestInterval<0) return true;
+		if(BackgroundTestInterval>0 && currentTime-pConn.lastTestTime-BackgroundTestInterval<0) return true;
+		if(testConnection(pConn)) return true;
 
 		removePooledConn(pConn,DESC_REMOVE_BAD);
 		tryToCreateNewConnByAsyn();
 		return false;
 	}
+	/**
+	 * test idle connections not active in half of background test interval,they are caught before
+	 * test and then returned to pool,so tested time of every idle connection is within the interval
+	 */
+	private void testIdleConnections() {
+		if (poolState.get() != POOL_NORMAL) return;
+		long currentTime=currentTimeMillis();
+		long testThreshold=BackgroundTestInterval/2;
+		for (PooledConnection pConn : connArray) {
+			if (pConn.state == CONNECTION_IDLE
+					&& currentTime-pConn.lastAccessTime-testThreshold>=0
+					&& currentTime-pConn.lastTestTime-testThreshold>=0
+					&& ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_USING)) {
+				final PooledConnection testConn=pConn;
+				backgroundTestExecutor.execute(new Runnable() {
+					public void run() {
+						testInBackground(testConn);
+					}
+				});
+			}
+		}
+	}
+	private void testInBackground(PooledConnection pConn) {
+		long lastAccessTime=pConn.lastAccessTime;
+		if (poolState.get() != POOL_NORMAL) {//pool closing,return it for clearing
+			recycle(pConn);
+		} else if (testConnection(pConn)) {
+			pConn.lastAccessTime=lastAccessTime;//keep idle time
+			pConn.lastTestTime=currentTimeMillis();
+			recycle(pConn);
+		} else {
+			removePooledConn(pConn,DESC_REMOVE_BAD);
+			tryToCreateNewConnByAsyn();
+		}
+	}
+	/**
+	 * a fatal exception on one connection is likely caused by database failover,so idle connections
+	 * are tested or removed in parallel and replaced by new ones,at most once in connection test interval
+	 */
+	void onFatalException() {
+		if (FatalIdleAction == FATAL_IDLE_NONE || poolState.get() != POOL_NORMAL) return;
+		long currentTime=currentTimeMillis();
+		long lastCheckTime=lastFatalCheckTime.get();
+		if (currentTime-lastCheckTime-ConnectionTestInterval<0 || !lastFatalCheckTime.compareAndSet(lastCheckTime,currentTime))
+			return;
+
+		log.info("BeeCP({})fatal exception occurred,begin to {} idle connections",poolName,FatalIdleAction==FATAL_IDLE_TEST?"test":"evict");
+		for (PooledConnection pConn : connArray) {
+			if (pConn.state == CONNECTION_IDLE && ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_USING)) {
+				final PooledConnection checkConn=pConn;
+				backgroundTestExecutor.execute(new Runnable() {
+					public void run() {
+						revalidateInBackground(checkConn);
+					}
+				});
+			}
+		}
+	}
+	private void revalidateInBackground(PooledConnection pConn) {
+		if (poolState.get() != POOL_NORMAL) {//pool closing,return it for clearing
+			recycle(pConn);
+			return;
+		}
+		if (FatalIdleAction == FATAL_IDLE_TEST) {
+			long lastAccessTime=pConn.lastAccessTime;
+			if (testConnection(pConn)) {
+				pConn.lastAccessTime=lastAccessTime;//keep idle time
+				pConn.lastTestTime=currentTimeMillis();
+				recycle(pConn);
+				return;
+			}
+			removePooledConn(pConn,DESC_REMOVE_BAD);
+		} else {
+			removePooledConn(pConn,DESC_REMOVE_FAILOVER);
+		}
+
+		tryToReplaceConnByAsyn();
+	}
+	//test connection with policy
+	private boolean testConnection(PooledConnection pConn) {
+		if((eventMask&CODE_TEST)==0 && eventRecorder==null)return testPolicy.isActive(pConn);
+
+		long beginTime=nanoTime();
+		boolean active=testPolicy.isActive(pConn);
+		long tookTime=nanoTime()-beginTime;
+		if((eventMask&CODE_TEST)!=0)fireTestEvent(tookTime,active);
+		if(!active && eventRecorder!=null)eventRecorder.record(TYPE_TEST_FAIL,pConn.id,0,tookTime);
+		return active;
+	}
 	/**
 	 * create initialization connections
 	 *
@@ -350,13 +734,114 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	 *             error occurred in creating connections
 	 */
 	private void createInitConnections(int initSize) throws SQLException {
+		int concurrentSize=Math.min(initSize,poolConfig.getInitialConcurrentSize());
+		if(concurrentSize<=1) {
+			SQLException failedCause=null;
+			int failedSize=0;
+			for (int i = 0; i < initSize; i++) {
+				try {
+					createPooledConn(CONNECTION_IDLE);
+				} catch (SQLException e) {
+					failedSize++;
+					if(failedCause==null)failedCause=e;
+					if(poolConfig.isInitialFailFast())break;
+				}
+			}
+			if (failedCause != null) {
+				if (poolConfig.isInitialFailFast()) {
+					for (PooledConnection pConn : connArray)
+						removePooledConn(pConn, DESC_REMOVE_INIT);
+					throw failedCause;
+				}
+				log.warn("BeeCP({})failed to create {} initial connections,pool started with {} connections",poolName,failedSize,connArray.length,failedCause);
+			}
+		}else{
+			createInitConnectionsInParallel(initSize,concurrentSize);
+		}
+	}
+	//create initial connections in background,new connections are transferred to waiters firstly
+	private void createInitConnectionsByAsyn(int initSize) {
+		int concurrentSize=Math.min(initSize,poolConfig.getInitialConcurrentSize());
+		if(concurrentSize<=0){
+			initCreateDone=true;
+			ready=true;
+			return;
+		}
+
+		final AtomicInteger remainSize=new AtomicInteger(initSize);
+		final AtomicInteger runningSize=new AtomicInteger(concurrentSize);
+		PoolThreadThreadFactory threadFactory=new PoolThreadThreadFactory("InitialConnectionCreate");
+		Runnable createTask=new Runnable() {
+			public void run() {
+				try {
+					PooledConnection pConn;
+					while (remainSize.getAndDecrement() > 0 && poolState.get() == POOL_NORMAL) {
+						if ((pConn = createPooledConn(CONNECTION_USING)) == null) break;
+						recycle(pConn);
+					}
+				} catch (SQLException e) {
+					log.warn("BeeCP({})failed to create initial connection in background",poolName,e);
+				} finally {
+					if (runningSize.decrementAndGet() == 0) {
+						initCreateDone = true;
+						if (connArray.length > 0) ready = true;
+						log.info("BeeCP({})initial connections created in background,current size:{}",poolName,connArray.length);
+					}
+				}
+			}
+		};
+		for (int i = 0; i < concurrentSize; i++)
+			threadFactory.newThread(createTask).start();
+	}
+	//create initial connections by multiple threads
+	private void createInitConnectionsInParallel(int initSize,int concurrentSize) throws SQLException {
+		ExecutorService executor=Executors.newFixedThreadPool(concurrentSize,new PoolThreadThreadFactory("InitialConnectionCreate"));
+		CompletionService<PooledConnection> completionService=new ExecutorCompletionService<PooledConnection>(executor);
+		Callable<PooledConnection> createTask=new Callable<PooledConnection>() {
+			public PooledConnection call() throws SQLException {
+				return createPooledConn(CONNECTION_IDLE);
+			}
+		};
+
+		SQLException failedCause=null;
+		int failedSize=0;
+		boolean interrupted=false;
 		try {
-			for (int i=0;i<initSize; i++)
-				createPooledConn(CONNECTION_IDLE);
-		} catch (SQLException e) {
-			for (PooledConnection pConn : connArray)
-				removePooledConn(pConn,DESC_REMOVE_INIT);
-			throw e;
+			for (int i = 0; i < initSize; i++)
+				completionService.submit(createTask);
+			for (int i = 0; i < initSize; i++) {
+				try {
+					completionService.take().get();
+				} catch (ExecutionException e) {
+					Throwable cause=e.getCause();
+					failedSize++;
+					if(failedCause==null)failedCause=(cause instanceof SQLException)?(SQLException)cause:new SQLException(cause);
+					if(poolConfig.isInitialFailFast())break;
+				}
+			}
+		} catch (InterruptedException e) {
+			interrupted=true;
+			if(failedCause==null)failedCause=new SQLException("Interrupted on creating initial connections",e);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		try {
+			if (failedCause != null) {
+				if (poolConfig.isInitialFailFast() || failedSize == 0) {
+					try {
+						executor.awaitTermination(Long.MAX_VALUE,MILLISECONDS);
+					} catch (InterruptedException e) {
+						interrupted=true;
+					}
+					for (PooledConnection pConn : connArray)
+						removePooledConn(pConn, DESC_REMOVE_INIT);
+					throw failedCause;
+				}
+				log.warn("BeeCP({})failed to create {} initial connections,pool started with {} connections",poolName,failedSize,connArray.length,failedCause);
+			}
+		} finally {
+			if (interrupted) Thread.currentThread().interrupt();//restore interrupt flag for caller
 		}
 	}
 
@@ -371,44 +856,88 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	public Connection getConnection() throws SQLException {
 		if (poolState.get() != POOL_NORMAL)throw PoolCloseException;
 
-		//0:try to get from threadLocal cache
 		WeakReference<Borrower> bRef = threadLocal.get();
 		Borrower borrower=(bRef !=null)?bRef.get():null;
-		if (borrower != null) {
+		if (borrower == null) {
+			borrower = new Borrower();
+			threadLocal.set(new WeakReference<Borrower>(borrower));
+		}
+		if(workloadGroups!=null)return getConnectionInGroup(borrower);
+		if(!borrowTraceInd)return getConnection(borrower);
+		return getTracedConnection(borrower);
+	}
+	//borrow in workload group bound on current thread,connection is counted to the group until returned
+	private Connection getConnectionInGroup(Borrower borrower) throws SQLException {
+		borrower.groupIndex=workloadGroups.indexOf(WorkloadGroup.get());
+		borrower.groupTaken=false;
+		try{
+			Connection con=borrowTraceInd?getTracedConnection(borrower):getConnection(borrower);
+			borrower.lastUsedConn.groupIndex=borrower.groupIndex;//count moves to connection
+			borrower.groupTaken=false;
+			return con;
+		}finally{
+			untakeInGroup(borrower);
+		}
+	}
+	//borrow with event and record of borrow time
+	private Connection getTracedConnection(Borrower borrower) throws SQLException {
+		long beginTime=nanoTime();
+		try{
+			Connection con=getConnection(borrower);
+			long endTime=nanoTime();
 			PooledConnection pConn=borrower.lastUsedConn;
-			if (pConn != null && ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_USING)) {
-				if(testOnBorrow(pConn))return createProxyConnection(pConn, borrower);
-
+			pConn.borrowTime=endTime;
+			if((eventMask&CODE_BORROW)!=0)fireBorrowEvent(borrower.path,endTime-beginTime,null);
+			if(eventRecorder!=null)eventRecorder.record(TYPE_BORROW,pConn.id,borrower.path,endTime-beginTime);
+			return con;
+		}catch(SQLException e){
+			if((eventMask&CODE_BORROW)!=0)fireBorrowEvent(borrower.path,nanoTime()-beginTime,e);
+			throw e;
+		}
+	}
+	private Connection getConnection(Borrower borrower) throws SQLException {
+		//0:try to get from threadLocal cache
+		PooledConnection pConn=borrower.lastUsedConn;
+		if (pConn != null && ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_USING)) {
+			if (!takeInGroup(borrower)) {//group is full,hand it to waiters
+				handBackInGroups(pConn);
+			} else if(testOnBorrow(pConn)){
+				borrower.path=PATH_THREAD_LOCAL;
+				return createProxyConnection(pConn, borrower);
+			} else {
 				borrower.lastUsedConn = null;
 			}
-		} else {
-			borrower = new Borrower();
-			threadLocal.set(new WeakReference<Borrower>(borrower));
 		}
 
 		try{
+			borrower.path=PATH_SEARCH;
 			long deadline=nanoTime()+DefaultMaxWaitNanos;
-			if (semaphore.tryAcquire(DefaultMaxWaitNanos,NANOSECONDS)) {//concurrent gateway
+			PoolSemaphore gateway=borrower.groupIndex<0?semaphore:workloadGroups.getSemaphore(borrower.groupIndex);
+			if (gateway.tryAcquire(DefaultMaxWaitNanos,NANOSECONDS)) {//concurrent gateway
 				try {
-					//1:try to search one from array
-					PooledConnection pConn;
-					PooledConnection[]array=connArray;
-					for (int i=0,len=array.length;i<len;i++) {
-						pConn=array[i];
-						if (ConnStateUpdater.compareAndSet(pConn,CONNECTION_IDLE,CONNECTION_USING) && testOnBorrow(pConn))
+					if(takeInGroup(borrower)){//wait for hand-off when over share of workload group
+						//1:try to search one from array
+						PooledConnection[]array=connArray;
+						for (int i=0,len=array.length;i<len;i++) {
+							pConn=array[i];
+							if (ConnStateUpdater.compareAndSet(pConn,CONNECTION_IDLE,CONNECTION_USING) && testOnBorrow(pConn))
+								return createProxyConnection(pConn,borrower);
+						}
+
+						//2:try to create one directly
+						if(connArray.length<PoolMaxSize && (pConn=createPooledConn(CONNECTION_USING))!=null){
+							borrower.path=PATH_CREATE;
 							return createProxyConnection(pConn,borrower);
+						}
 					}
 
-					//2:try to create one directly
-					if(connArray.length<PoolMaxSize && (pConn=createPooledConn(CONNECTION_USING))!=null)
-						return createProxyConnection(pConn,borrower);
-
 					//3:try to get one transferred connection
 					long timeout;
                     boolean isFailed=false;
                     SQLException failedCause=null;
                     Thread borrowThread = borrower.thread;
                     borrower.state = PoolObjectsState.BORROWER_NORMAL;
+                    borrower.path=PATH_TRANSFER;
 
                     try {
                         waitQueue.offer(borrower);
@@ -418,8 +947,12 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 							Object state = borrower.state;
 							if (state instanceof PooledConnection) {
 								pConn = (PooledConnection) state;
-								if (this.transferPolicy.tryCatch(pConn) && this.testOnBorrow(pConn))
-									return createProxyConnection(pConn, borrower);
+								if (this.transferPolicy.tryCatch(pConn)) {
+									if (!takeInGroup(borrower))//group filled by others after hand-off,hand it to next waiter
+										this.handBackInGroups(pConn);
+									else if (this.testOnBorrow(pConn))
+										return createProxyConnection(pConn, borrower);
+								}
 
 								borrower.state = PoolObjectsState.BORROWER_NORMAL;
 								yield();
@@ -445,7 +978,7 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
                     } finally {
                         this.waitQueue.remove(borrower);
                     }
-				}finally { semaphore.release();}
+				}finally { gateway.release();}
 			}
 
 			throw RequestTimeoutException;
@@ -454,6 +987,26 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		}
 	}
 
+	//count borrower to its workload group once per borrow,kept on retry and moved to connection on success
+	private boolean takeInGroup(Borrower borrower) {
+		if(borrower.groupIndex<0||borrower.groupTaken)return true;
+		return borrower.groupTaken=workloadGroups.tryTake(borrower.groupIndex,PoolMaxSize);
+	}
+	private void untakeInGroup(Borrower borrower) {
+		if(borrower.groupTaken){
+			borrower.groupTaken=false;
+			workloadGroups.onReturn(borrower.groupIndex);
+		}
+	}
+	//release count of connection in its workload group
+	private void releaseGroup(PooledConnection pConn) {
+		int groupIndex=pConn.groupIndex;
+		if(groupIndex>=0){
+			pConn.groupIndex=-1;
+			workloadGroups.onReturn(groupIndex);
+		}
+	}
+
 	// create proxy to wrap connection as result
 	private static final Connection createProxyConnection(PooledConnection pConn, Borrower borrower)
 			throws SQLException {
@@ -473,6 +1026,58 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		tryToCreateNewConnByAsyn();
 	}
 
+	/**
+	 * reset dirty connection in background,then return it to pool
+	 *
+	 * @param pConn
+	 *            target connection need release
+	 */
+	void resetInBackground(final PooledConnection pConn) {
+		try {
+			resetExecutor.execute(new Runnable() {
+				public void run() {
+					try {
+						pConn.resetRawConnOnReturn();
+					} catch (Throwable e) {
+						log.warn("BeeCP({})failed to reset connection in background",poolName,e);
+						abandonOnReturn(pConn);
+						return;
+					}
+					recycle(pConn);
+				}
+			});
+		} catch (RejectedExecutionException e) {//pool closed
+			abandonOnReturn(pConn);
+		}
+	}
+
+	/**
+	 * remove connection broken by fatal exception on return
+	 *
+	 * @param pConn
+	 *            target connection need release
+	 */
+	void abandonBrokenOnReturn(PooledConnection pConn) {
+		removePooledConn(pConn,DESC_REMOVE_BROKEN);
+		tryToCreateNewConnByAsyn();
+	}
+
+	/**
+	 * check exception thrown from proxy objects whether fatal
+	 *
+	 * @param e
+	 *            exception thrown by driver
+	 * @return true,connection need be abandoned
+	 */
+	boolean isFatalException(SQLException e) {
+		try{
+			return exceptionClassifier.isFatal(e);
+		}catch(Throwable ex){
+			log.warn("BeeCP({})exception classifier error",poolName,ex);
+			return false;
+		}
+	}
+
 	/**
 	 * return connection to pool
 	 *
@@ -480,19 +1085,63 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	 *            target connection need release
 	 */
 	public void recycle(PooledConnection pConn) {
+		releaseGroup(pConn);
+		if(eventRecorder!=null)eventRecorder.record(TYPE_RECYCLE,pConn.id,0,0);
+		if(connArray.length>PoolMaxSize && removeOnShrink(pConn))return;
+		if((pConn.retireOnReturn||(MaxUsesInd && pConn.useCount>=pConn.useLimit)) && retireOnReturn(pConn))return;
+		long idleDeadline=pConn.lastAccessTime+IdleTimeout;
+		if(idleDeadline<pConn.timerDeadline)timerWheel.schedule(pConn,idleDeadline);//check time was hold deadline
 		transferPolicy.beforeTransfer(pConn);
-		Iterator<Borrower>iterator=waitQueue.iterator();
-		while(iterator.hasNext()) {
-			Borrower borrower=iterator.next();
-			for(Object state = borrower.state; state == PoolObjectsState.BORROWER_NORMAL || state == PoolObjectsState.BORROWER_WAITING; state = borrower.state) {
-				if (pConn.state != ConUnCatchStateCode) return;
-				if (BorrowerStateUpdater.compareAndSet(borrower, state, pConn)) {//transfer successful
-					if (state == BORROWER_WAITING) unpark(borrower.thread);
-					return;
+		if(workloadGroups!=null){
+			if(transferInGroups(pConn))return;
+		}else{
+			Iterator<Borrower>iterator=waitQueue.iterator();
+			while(iterator.hasNext()) {
+				Borrower borrower=iterator.next();
+				for(Object state = borrower.state; state == PoolObjectsState.BORROWER_NORMAL || state == PoolObjectsState.BORROWER_WAITING; state = borrower.state) {
+					if (pConn.state != ConUnCatchStateCode) return;
+					if (BorrowerStateUpdater.compareAndSet(borrower, state, pConn)) {//transfer successful
+						if (state == BORROWER_WAITING) unpark(borrower.thread);
+						if(eventRecorder!=null)eventRecorder.record(TYPE_TRANSFER,pConn.id,0,0);
+						return;
+					}
 				}
 			}
 		}
 		transferPolicy.onFailedTransfer(pConn);
+		if(connBudget!=null && connBudget.isStarved(this))closeIdleForBudget(pConn);
+	}
+	//give back a caught connection refused by its receiver,current state of receiver keeps it out of next hand-off
+	private void handBackInGroups(PooledConnection pConn) {
+		transferPolicy.beforeTransfer(pConn);
+		if(!transferInGroups(pConn))transferPolicy.onFailedTransfer(pConn);
+	}
+	//hand off to first waiter of the most under-served workload group which can take it,false if none
+	private boolean transferInGroups(PooledConnection pConn) {
+		while(true) {
+			Borrower selected=null;
+			double selectedLoad=Double.MAX_VALUE;
+			for(Borrower borrower:waitQueue) {
+				Object state = borrower.state;
+				if (state != BORROWER_NORMAL && state != BORROWER_WAITING) continue;
+				if (!borrower.groupTaken && !workloadGroups.canTake(borrower.groupIndex,PoolMaxSize)) continue;
+				double load=workloadGroups.getLoad(borrower.groupIndex);
+				if (load<selectedLoad) {
+					selected=borrower;
+					selectedLoad=load;
+				}
+			}
+			if (selected == null) return false;
+
+			for(Object state = selected.state; state == BORROWER_NORMAL || state == BORROWER_WAITING; state = selected.state) {
+				if (pConn.state != ConUnCatchStateCode) return true;
+				if (BorrowerStateUpdater.compareAndSet(selected, state, pConn)) {//transfer successful
+					if (state == BORROWER_WAITING) unpark(selected.thread);
+					if(eventRecorder!=null)eventRecorder.record(TYPE_TRANSFER,pConn.id,0,0);
+					return true;
+				}
+			}
+		}
 	}
 	/**
 	 * @param exception:
@@ -512,39 +1161,137 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	}
 
 	/**
-	 * inner timer will call the method to clear some idle timeout connections
-	 * or dead connections,or long time not active connections in using state
+	 * inner timer will call the method on every tick to close idle timeout connections
+	 * and recycle long time not active connections in using state,only the connections
+	 * reached their check time in timer wheel are visited,others are scheduled again.
 	 */
 	private void closeIdleTimeoutConnection() {
 		if (poolState.get() == POOL_NORMAL) {
-			PooledConnection[]array=connArray;
-			for (int i=0,len=array.length;i<len;i++) {
-				PooledConnection pConn=array[i];
+			long currentTime=currentTimeMillis();
+			retireBudget.set(Math.max(1,connArray.length*MaxRetirePercent/100));
+			timerWheel.pollExpired(currentTime,timerExpiredList);
+			int idleSize=-1;//counted once per tick on first min idle check,decreased on closing idle ones
+			for (int i=0,len=timerExpiredList.size();i<len;i++) {
+				PooledConnection pConn=timerExpiredList.get(i);
 				int state = pConn.state;
-				if (state == CONNECTION_IDLE && !existBorrower()) {
-					boolean isTimeoutInIdle=(currentTimeMillis() - pConn.lastAccessTime - poolConfig.getIdleTimeout()>=0);
-					if (isTimeoutInIdle && ConnStateUpdater.compareAndSet(pConn, state, CONNECTION_CLOSED)) {//need close idle
+				if (currentTime>=pConn.retireTime) {//reach life time
+					if (state == CONNECTION_IDLE) {
+						if (retireBudget.getAndDecrement() > 0 && ConnStateUpdater.compareAndSet(pConn, state, CONNECTION_CLOSED)) {
+							if (idleSize > 0) idleSize--;
+							removePooledConn(pConn, DESC_REMOVE_RETIRE);
+							tryToCreateNewConnByAsyn();
+						} else {
+							timerWheel.schedule(pConn, currentTime);//retry at next tick
+						}
+						continue;
+					} else if (state == CONNECTION_USING) {
+						pConn.retireOnReturn = true;
+					}
+				}
+
+				if (state == CONNECTION_IDLE) {
+					boolean isTimeoutInIdle=(currentTime - pConn.lastAccessTime - IdleTimeout>=0);
+					if (isTimeoutInIdle && PoolMinIdle>0) {
+						if (idleSize < 0) idleSize = getConnIdleSize();
+						if (idleSize <= PoolMinIdle) {//keep min idle
+							timerWheel.schedule(pConn,Math.min(currentTime+IdleTimeout,pConn.retireTime));
+							continue;
+						}
+					}
+					if (isTimeoutInIdle && !existBorrower() && ConnStateUpdater.compareAndSet(pConn, state, CONNECTION_CLOSED)) {//need close idle
+						if (idleSize > 0) idleSize--;
 						removePooledConn(pConn, DESC_REMOVE_IDLE);
 						tryToCreateNewConnByAsyn();
+						continue;
 					}
 				} else if (state == CONNECTION_USING) {
 					ProxyConnectionBase proxyConn=pConn.proxyConn;
-					boolean isHolTimeoutInNotUsing = currentTimeMillis() - pConn.lastAccessTime - poolConfig.getHoldTimeout()>= 0;
+					boolean isHolTimeoutInNotUsing = currentTime - pConn.lastAccessTime - HoldTimeout>= 0;
 					if(isHolTimeoutInNotUsing &&proxyConn!=null && proxyConn.setAsClosed()){//recycle connection
+						if(pConn.brokenInd){//fatal error occurred on it,not recycle
+							this.abandonBrokenOnReturn(pConn);
+							continue;
+						}
 						try{
 							pConn.resetRawConnOnReturn();
 							this.recycle(pConn);
 						}catch(Throwable e){
 							this.abandonOnReturn(pConn);
+							continue;
 						}
 					}
-				} else if (state == CONNECTION_CLOSED) {
-					removePooledConn(pConn, DESC_REMOVE_CLOSED);
-					tryToCreateNewConnByAsyn();
+				} else {//removed by other thread
+					continue;
 				}
+				scheduleTimeoutCheck(pConn,currentTime);
 			}
+			timerExpiredList.clear();
+			if(PoolMinIdle>0 && getConnIdleSize()<PoolMinIdle)tryToCreateNewConnByAsyn();//retry after creation failed
+			if(multiHostFactory!=null)rebalanceHosts();
 		}
 	}
+	//move one idle connection of overloaded host to the least loaded host in a tick
+	private void rebalanceHosts() {
+		int hostIndex=multiHostFactory.getOverloadedHost();
+		if(hostIndex<0)return;
+		for (PooledConnection pConn : connArray) {
+			if (pConn.state == CONNECTION_IDLE && multiHostFactory.isFrom(pConn.rawConn,hostIndex)
+					&& ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_CLOSED)) {
+				removePooledConn(pConn, DESC_REMOVE_REBALANCE);
+				tryToReplaceConnByAsyn();//new one is created on least loaded host by creation thread
+				return;
+			}
+		}
+	}
+	//close an idle connection over min idle size to free a permit of shared budget for other pools
+	boolean closeIdleForBudget() {
+		if(poolState.get()!=POOL_NORMAL || connArray.length<=PoolMinIdle)return false;
+		for (PooledConnection pConn : connArray) {
+			if (closeIdleForBudget(pConn))return true;
+		}
+		return false;
+	}
+	private boolean closeIdleForBudget(PooledConnection pConn) {
+		if (connArray.length > PoolMinIdle && pConn.state == CONNECTION_IDLE && ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_CLOSED)) {
+			removePooledConn(pConn, DESC_REMOVE_BUDGET);
+			return true;
+		}
+		return false;
+	}
+	//create connection for waiters after a permit of shared budget released by other pools
+	boolean onBudgetReleased() {
+		if(!isWaitingForBudget())return false;
+		tryToCreateNewConnByAsyn();
+		return true;
+	}
+	//borrowers are waiting and pool is under max size
+	boolean isWaitingForBudget() {
+		return poolState.get()==POOL_NORMAL && !waitQueue.isEmpty() && connArray.length<PoolMaxSize;
+	}
+	//called by pooled connection after raw connection closed
+	void onRawConnClosed(Connection rawConn) {
+		if(multiHostFactory!=null)multiHostFactory.release(rawConn);
+	}
+	//schedule connection to the earliest future deadline,a passed deadline of current state will be checked at next tick
+	private void scheduleTimeoutCheck(PooledConnection pConn,long currentTime) {
+		if(pConn.state==CONNECTION_CLOSED)return;
+		long lastAccessTime=pConn.lastAccessTime;
+		long idleDeadline=lastAccessTime+IdleTimeout;
+		long holdDeadline=lastAccessTime+HoldTimeout;
+		long stateDeadline=(pConn.state==CONNECTION_IDLE)?idleDeadline:holdDeadline;
+		long otherDeadline=(pConn.state==CONNECTION_IDLE)?holdDeadline:idleDeadline;
+
+		long deadline;
+		if(stateDeadline<=currentTime)
+			deadline=currentTime;
+		else if(otherDeadline>currentTime && otherDeadline<stateDeadline)
+			deadline=otherDeadline;
+		else
+			deadline=stateDeadline;
+		long retireTime=pConn.retireTime;
+		if(retireTime>currentTime && retireTime<deadline)deadline=retireTime;
+		timerWheel.schedule(pConn,deadline);
+	}
 
 	// shutdown pool
 	public void shutdown() {
@@ -557,15 +1304,32 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 					idleCheckSchFuture.cancel(true);
 				}
 
-				idleSchExecutor.shutdownNow();
-				networkTimeoutExecutor.shutdownNow();
+				if(testSchFuture!=null)testSchFuture.cancel(true);
+				if(sizeSchFuture!=null)sizeSchFuture.cancel(true);
+				if(sharedThreads==null)idleSchExecutor.shutdownNow();
+				if(connBudget!=null)connBudget.unregister(this);
+				if(backgroundTestExecutor!=null)backgroundTestExecutor.shutdownNow();
+				if(resetExecutor!=null)resetExecutor.shutdownNow();
+				if(sharedThreads==null)
+					networkTimeoutExecutor.shutdownNow();
+				else
+					sharedThreads.unregister(this);
 				shutdownCreateConnThread();
 				unregisterJMX();
+				if(eventRecorder!=null && !isNullText(poolConfig.getEventRecorderDumpFile())){
+					try {
+						eventRecorder.dump(poolConfig.getEventRecorderDumpFile());
+					} catch (Throwable e) {
+						log.warn("BeeCP({})failed to dump pool events",poolName,e);
+					}
+				}
 
-				try {
-					Runtime.getRuntime().removeShutdownHook(exitHook);
-				} catch (Throwable e) {
-					log.warn("BeeCP({})failed to remove pool hook",poolName);
+				if(exitHook!=null){
+					try {
+						Runtime.getRuntime().removeShutdownHook(exitHook);
+					} catch (Throwable e) {
+						log.warn("BeeCP({})failed to remove pool hook",poolName);
+					}
 				}
 
 				log.info("BeeCP({})has shutdown",poolName);
@@ -616,7 +1380,6 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 
 			if (connArray.length > 0)parkNanos(parkNanoSeconds);
 		} // while
-		idleSchExecutor.getQueue().clear();
 	}
 
 	/**
@@ -633,8 +1396,25 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 			synchronized(connNotifyLock){
 				if(connArray.length+needAddConnSize.get()<PoolMaxSize)  {
 					needAddConnSize.incrementAndGet();
-					if(createConnThreadState.compareAndSet(THREAD_WAITING, THREAD_WORKING))
-						unpark(this);
+					wakeupCreateConnThread();
+				}
+			}
+		}
+	}
+	// notify to create a connection to replace a removed one(rebalance or failover),not on timer thread
+	private void tryToReplaceConnByAsyn() {
+		needReplaceConnSize.incrementAndGet();
+		wakeupCreateConnThread();
+	}
+	private void wakeupCreateConnThread() {
+		if(createConnThreadState.compareAndSet(THREAD_WAITING, THREAD_WORKING)){
+			if(sharedThreads==null){
+				unpark(this);
+			}else{
+				try{
+					sharedThreads.getCreateExecutor().execute(createTask);
+				}catch(RejectedExecutionException e){//shared threads shutdown
+					createConnThreadState.compareAndSet(THREAD_WORKING, THREAD_WAITING);
 				}
 			}
 		}
@@ -653,37 +1433,55 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 
 	// create connection to pool
 	public void run() {
-		PooledConnection pConn;
 		while(true) {
-			while(needAddConnSize.get() > 0) {
-				needAddConnSize.decrementAndGet();
-				if (!waitQueue.isEmpty()) {
-					try {
-						if ((pConn = createPooledConn(CONNECTION_USING)) != null)
-							new TransferThread(pConn).start();
-					} catch (SQLException e) {
-						new TransferThread(e).start();
-					}
-				}
-			}
-
-			if (needAddConnSize.get()==0 && createConnThreadState.compareAndSet(THREAD_WORKING, THREAD_WAITING))
+			createConnections();
+			if (needAddConnSize.get()==0 && needReplaceConnSize.get()==0 && createConnThreadState.compareAndSet(THREAD_WORKING, THREAD_WAITING))
 				park(this);
 			if (createConnThreadState.get() == THREAD_DEAD) break;
 		}
 	}
-	//new connection TransferThread
-	class TransferThread extends Thread {
-		private boolean isConn;
-		private SQLException e;
-		private PooledConnection pConn;
-		TransferThread(SQLException e){this.e=e;isConn=false;}
-		TransferThread(PooledConnection pConn){this.pConn=pConn;isConn=true;}
-		public void run(){
-			if(isConn) {
+	// create connection to pool on shared threads,task ends when no more creation request
+	private void runCreateTask() {
+		do {
+			createConnections();
+			if (!createConnThreadState.compareAndSet(THREAD_WORKING, THREAD_WAITING)) return;//dead
+		} while ((needAddConnSize.get() > 0 || needReplaceConnSize.get() > 0) && createConnThreadState.compareAndSet(THREAD_WAITING, THREAD_WORKING));
+	}
+	private void createConnections() {
+		PooledConnection pConn;
+		while(needAddConnSize.get() > 0) {
+			needAddConnSize.decrementAndGet();
+			if (!waitQueue.isEmpty()) {
+				try {
+					if ((pConn = createPooledConn(CONNECTION_USING)) != null)
+						recycle(pConn);//hand off to waiter directly
+				} catch (SQLException e) {
+					transferException(e);
+				}
+			}
+		}
+		while(needReplaceConnSize.get() > 0) {
+			needReplaceConnSize.decrementAndGet();
+			if (poolState.get() != POOL_NORMAL) continue;
+			try {
+				if ((pConn = createPooledConn(CONNECTION_USING)) != null)
+					recycle(pConn);
+			} catch (SQLException e) {
+				log.warn("BeeCP({})failed to create connection to replace removed one",poolName,e);
+			}
+		}
+		if(PoolMinIdle>0)fillMinIdleConnections();
+	}
+	//create connections until idle size reach min idle,new connections are transferred to waiters firstly
+	private void fillMinIdleConnections() {
+		PooledConnection pConn;
+		while (poolState.get() == POOL_NORMAL && needAddConnSize.get()==0 && getConnIdleSize()<PoolMinIdle) {
+			try {
+				if ((pConn = createPooledConn(CONNECTION_USING)) == null) break;
 				recycle(pConn);
-			}else {
-				transferException(e);
+			} catch (SQLException e) {
+				log.warn("BeeCP({})failed to create connection for min idle",poolName,e);
+				break;
 			}
 		}
 	}
@@ -702,6 +1500,18 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 			log.info("BeeCP({})finished reseting",poolName);
 		}
 	}
+	// replace current connections gradually,borrowers are served during reset
+	public void rollingReset() {
+		if (poolState.get() == POOL_NORMAL) {
+			log.info("BeeCP({})begin to reset rolling",poolName);
+			long currentTime=currentTimeMillis();
+			for (PooledConnection pConn : connArray) {//retire them in budget of timer or on return
+				pConn.retireTime = currentTime;
+				pConn.retireOnReturn = true;
+				timerWheel.schedule(pConn, currentTime);
+			}
+		}
+	}
 
 	public Map printPoolInfo(){
 		 Map<String,Integer> mapInfo=new HashMap<String,Integer>(5);
@@ -712,9 +1522,68 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		 mapInfo.put("ConnUsingSize",totSize-idleSize);
 		 mapInfo.put("SemaphoreWaiterSize",getSemaphoreWaitingSize());
 		 mapInfo.put("TransferWaiterSize",getSemaphoreWaitingSize());
+		 if(workloadGroups!=null){
+			 for(int i=0;i<workloadGroups.size();i++)
+				 mapInfo.put("GroupUsingSize("+workloadGroups.getName(i)+")",workloadGroups.getUsingSize(i));
+		 }
 		log.info("Pool info:"+mapInfo);
 		 return mapInfo;
 	}
+	public boolean isReady(){
+		return ready && poolState.get()==POOL_NORMAL;
+	}
+	public int getPoolMaxSize(){
+		return PoolMaxSize;
+	}
+	public void setPoolMaxSize(int size){
+		if(size<=0)throw new IllegalArgumentException("Pool max size must be greater than zero");
+		synchronized (resizeLock) {
+			int oldSize=PoolMaxSize;
+			if(size<semaphore.getSize())resizeSemaphore(size);
+			PoolMaxSize=size;
+			log.info("BeeCP({})max size changed from {} to {}",poolName,oldSize,size);
+
+			if(size<oldSize) {//close idle connections over new size
+				for (PooledConnection pConn : connArray) {
+					if (connArray.length <= PoolMaxSize) break;
+					if (ConnStateUpdater.compareAndSet(pConn, CONNECTION_IDLE, CONNECTION_CLOSED))
+						removePooledConn(pConn, DESC_REMOVE_SHRINK);
+				}
+			}else{//create connections for waiters
+				for(int i=oldSize;i<size && !waitQueue.isEmpty();i++)
+					tryToCreateNewConnByAsyn();
+			}
+		}
+	}
+	//sample pool load every second and change max size at end of sampling window
+	private void adjustPoolSize(){
+		if (poolState.get() != POOL_NORMAL) return;
+		if (!sizeController.sample(getConnUsingSize(),getSemaphoreWaitingSize()+waitQueue.size())) return;
+
+		int curSize=PoolMaxSize;
+		int newSize=sizeController.evaluate(curSize);
+		if (newSize != curSize) {
+			synchronized (resizeLock) {
+				setPoolMaxSize(newSize);
+				int concurrentSize = Math.min(poolConfig.getBorrowConcurrentSize(), newSize);
+				if (semaphore.getSize() < concurrentSize) resizeSemaphore(concurrentSize);
+			}
+		}
+	}
+	public int getBorrowConcurrentSize(){
+		return semaphore.getSize();
+	}
+	public void setBorrowConcurrentSize(int size){
+		synchronized (resizeLock) {
+			if(size<=0 || size>PoolMaxSize)throw new IllegalArgumentException("Borrow concurrent size must be in range [1,pool max size]");
+			resizeSemaphore(size);
+		}
+	}
+	//resize borrow gateways of pool and workload groups
+	private void resizeSemaphore(int size){
+		semaphore.resize(size);
+		if(workloadGroups!=null)workloadGroups.resizeSemaphores(size);
+	}
 	public int getConnTotalSize(){
 		return connArray.length;
 	}
@@ -731,14 +1600,20 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 		return(active>0)?active:0;
 	}
 	public int getSemaphoreAcquiredSize(){
-		return poolConfig.getBorrowConcurrentSize()-semaphore.availablePermits();
+		int size=semaphore.getSize()-semaphore.availablePermits();
+		return workloadGroups==null?size:size+workloadGroups.getSemaphoreAcquiredSize();
 	}
 	public int getSemaphoreWaitingSize(){
-		return semaphore.getQueueLength();
+		int size=semaphore.getQueueLength();
+		return workloadGroups==null?size:size+workloadGroups.getSemaphoreWaitingSize();
 	}
 	public int getTransferWaitingSize(){
 		return waitQueue.size();
 	}
+	public void dumpRecentEvents(String fileName)throws IOException{
+		if(eventRecorder==null)throw new IOException("Pool event recorder not enabled");
+		eventRecorder.dump(fileName);
+	}
 	// register JMX
 	private void registerJMX() {
 		if (poolConfig.isEnableJMX()) {
@@ -777,6 +1652,58 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 	}
 	//******************************** JMX **************************************/
 
+	//******************************** Event **************************************/
+	private void fireBorrowEvent(int path,long waitNanos,SQLException cause){
+		try{
+			eventListener.onBorrow(poolName,path,waitNanos,cause);
+		}catch(Throwable e){
+			log.warn("BeeCP({})failed to deliver borrow event",poolName,e);
+		}
+	}
+	void fireReturnEvent(long holdNanos){
+		try{
+			eventListener.onReturn(poolName,holdNanos);
+		}catch(Throwable e){
+			log.warn("BeeCP({})failed to deliver return event",poolName,e);
+		}
+	}
+	private void fireCreateEvent(long tookNanos,SQLException cause){
+		try{
+			eventListener.onConnectionCreate(poolName,tookNanos,cause);
+		}catch(Throwable e){
+			log.warn("BeeCP({})failed to deliver create event",poolName,e);
+		}
+	}
+	private void fireCloseEvent(String reason){
+		try{
+			eventListener.onConnectionClose(poolName,reason);
+		}catch(Throwable e){
+			log.warn("BeeCP({})failed to deliver close event",poolName,e);
+		}
+	}
+	private void fireTestEvent(long tookNanos,boolean active){
+		try{
+			eventListener.onConnectionTest(poolName,tookNanos,active);
+		}catch(Throwable e){
+			log.warn("BeeCP({})failed to deliver test event",poolName,e);
+		}
+	}
+	void firePrepareEvent(String sql,long tookNanos,boolean cacheHit){
+		try{
+			eventListener.onStatementPrepare(poolName,sql,tookNanos,cacheHit);
+		}catch(Throwable e){
+			log.warn("BeeCP({})failed to deliver prepare event",poolName,e);
+		}
+	}
+	void fireExecuteEvent(long tookNanos){
+		try{
+			eventListener.onStatementExecute(poolName,tookNanos);
+		}catch(Throwable e){
+			log.warn("BeeCP({})failed to deliver execute event",poolName,e);
+		}
+	}
+	//******************************** Event **************************************/
+
 	// Connection check Policy
 	interface ConnectionTestPolicy {
 		boolean isActive(PooledConnection pConn);
@@ -843,6 +1770,24 @@ public final class FastConnectionPool extends Thread implements ConnectionPool,
 			return false;
 		}
 	}
+	//check Policy(validation dialect,one round trip)
+	class DialectTestPolicy implements ConnectionTestPolicy {
+		private final ValidationDialect dialect;
+		public DialectTestPolicy(ValidationDialect dialect){
+			this.dialect=dialect;
+		}
+		public boolean isActive(PooledConnection pConn) {
+			try {
+				if(dialect.isAlive(pConn.rawConn,ConnectionTestTimeout)){
+					pConn.lastAccessTime=currentTimeMillis();
+					return true;
+				}
+			} catch (Throwable e) {
+				log.error("BeeCP({})failed to test connection",poolName,e);
+			}
+			return false;
+		}
+	}
 	// Transfer Policy
 	static interface TransferPolicy {
 		int getCheckStateCode();
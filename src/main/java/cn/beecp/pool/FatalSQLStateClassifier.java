@@ -0,0 +1,55 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.SQLExceptionClassifier;
+
+import java.sql.SQLException;
+
+import static cn.beecp.util.BeecpUtil.isNullText;
+
+/**
+ * Default exception classifier,SQLState matched by prefix list or error code in code list is fatal
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class FatalSQLStateClassifier implements SQLExceptionClassifier {
+	private final String[] fatalStates;
+	private final int[] fatalCodes;
+
+	FatalSQLStateClassifier(String fatalStates,String fatalCodes) {
+		this.fatalStates=isNullText(fatalStates)?new String[0]:fatalStates.trim().split("\\s*,\\s*");
+		String[] codes=isNullText(fatalCodes)?new String[0]:fatalCodes.trim().split("\\s*,\\s*");
+		this.fatalCodes=new int[codes.length];
+		for(int i=0;i<codes.length;i++)
+			this.fatalCodes[i]=Integer.parseInt(codes[i]);
+	}
+
+	public boolean isFatal(SQLException e) {
+		for(int depth=0;e!=null && depth<3;depth++,e=e.getNextException()){
+			String state=e.getSQLState();
+			if(state!=null){
+				for(String fatalState:fatalStates)
+					if(state.startsWith(fatalState))return true;
+			}
+			int code=e.getErrorCode();
+			for(int fatalCode:fatalCodes)
+				if(code==fatalCode)return true;
+		}
+		return false;
+	}
+}
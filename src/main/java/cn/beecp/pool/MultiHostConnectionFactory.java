@@ -0,0 +1,219 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.ConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multi-host ConnectionFactory,connections are spread over hosts by weight:every creation goes to the
+ * available host with least connections per weight,and fails over to other hosts on error.Each host has
+ * its own breaker,so a down host is skipped until backoff passed and its reconnections are spread over
+ * all survivors.FastConnectionPool replaces idle connections of overloaded host one by one when a host
+ * recovered or added.
+ *
+ * @author Chris.liao
+ * @version 1.0
+ */
+
+public final class MultiHostConnectionFactory implements ConnectionFactory{
+
+	/**
+	 * connection driver
+	 */
+	private Driver connectDriver;
+
+	/**
+	 * connection extra properties
+	 */
+	private Properties connectProperties;
+
+	/**
+	 * breaker setting of every host
+	 */
+	private int breakerThreshold;
+	private long breakerBackoff;
+	private long breakerMaxBackoff;
+
+	/**
+	 * hosts,replaced when added
+	 */
+	private volatile Host[] hosts=new Host[0];
+
+	/**
+	 * raw connection to its host
+	 */
+	private final IdentityHashMap<Connection,Host> connHostMap=new IdentityHashMap<Connection,Host>();
+
+	//Constructor
+	public MultiHostConnectionFactory(String[] connectURLs,int[] weights,Driver connectDriver,Properties connectProperties,
+									  int breakerThreshold,long breakerBackoff,long breakerMaxBackoff){
+		this.connectDriver = connectDriver;
+		this.connectProperties = connectProperties;
+		this.breakerThreshold=breakerThreshold;
+		this.breakerBackoff=breakerBackoff;
+		this.breakerMaxBackoff=breakerMaxBackoff;
+		for(int i=0;i<connectURLs.length;i++)
+			addHost(connectURLs[i],weights!=null && i<weights.length?weights[i]:1);
+	}
+
+	/**
+	 * add a host,connections are moved to it gradually by pool
+	 *
+	 * @param connectURL url of host
+	 * @param weight weight of host,greater than zero
+	 */
+	public synchronized void addHost(String connectURL,int weight){
+		if(weight<=0)throw new IllegalArgumentException("Host weight must be greater than zero");
+		Host[] hostsNew=new Host[hosts.length+1];
+		System.arraycopy(hosts,0,hostsNew,0,hosts.length);
+		hostsNew[hosts.length]=new Host(connectURL,weight,breakerThreshold>0?new ConnectionCreateBreaker(breakerThreshold,breakerBackoff,breakerMaxBackoff):null);
+		hosts=hostsNew;
+	}
+	public int getHostSize(){
+		return hosts.length;
+	}
+	public String getHostURL(int index){
+		return hosts[index].url;
+	}
+	public int getHostConnectionSize(int index){
+		return hosts[index].connSize.get();
+	}
+	public boolean isHostAvailable(int index){
+		return hosts[index].isAvailable();
+	}
+
+	//create one connection
+	public Connection create()throws SQLException{
+		Host[] curHosts=hosts;
+		boolean[] tried=new boolean[curHosts.length];
+		SQLException failedCause=null;
+		Host host;
+		while((host=selectHost(curHosts,tried))!=null){
+			if(host.breaker!=null){//rejection by breaker is not a failed probe,same as pool
+				try{
+					host.breaker.beforeCreate();
+				}catch(SQLException e){
+					failedCause=e;
+					continue;
+				}
+			}
+			host.connSize.incrementAndGet();//count in creation to spread concurrent creations
+			try{
+				Connection con=connectDriver.connect(host.url,connectProperties);
+				if(con==null)throw new SQLException("Driver not accept url:"+host.url);
+				if(host.breaker!=null)host.breaker.onSuccess();
+				synchronized(connHostMap){
+					connHostMap.put(con,host);
+				}
+				return con;
+			}catch(Throwable e){
+				host.connSize.decrementAndGet();
+				if(host.breaker!=null)host.breaker.onFailure(e);
+				if(!(e instanceof SQLException))throw e;
+				failedCause=(SQLException)e;
+			}
+		}
+		if(failedCause!=null)throw failedCause;
+		throw new SQLException("No available host to connect");
+	}
+
+	//available and not tried host with least connections per weight
+	private Host selectHost(Host[] curHosts,boolean[] tried){
+		Host selected=null;
+		int selectedIndex=-1;
+		double selectedLoad=Double.MAX_VALUE;
+		for(int i=0;i<curHosts.length;i++){
+			if(tried[i]||!curHosts[i].isAvailable())continue;
+			double load=(double)curHosts[i].connSize.get()/curHosts[i].weight;
+			if(load<selectedLoad){
+				selected=curHosts[i];
+				selectedIndex=i;
+				selectedLoad=load;
+			}
+		}
+		if(selectedIndex>=0)tried[selectedIndex]=true;
+		return selected;
+	}
+
+	//called by pool after raw connection closed
+	void release(Connection rawConn){
+		Host host;
+		synchronized(connHostMap){
+			host=connHostMap.remove(rawConn);
+		}
+		if(host!=null)host.connSize.decrementAndGet();
+	}
+
+	//raw connection is from host
+	boolean isFrom(Connection rawConn,int hostIndex){
+		synchronized(connHostMap){
+			return connHostMap.get(rawConn)==hosts[hostIndex];
+		}
+	}
+
+	/**
+	 * host has more connections than its weight share while an available host has less,
+	 * one connection of it should be moved
+	 *
+	 * @return index of overloaded host,-1 if balanced
+	 */
+	int getOverloadedHost(){
+		Host[] curHosts=hosts;
+		int totalSize=0,totalWeight=0;
+		for(Host host:curHosts){
+			totalSize+=host.connSize.get();
+			if(host.isAvailable())totalWeight+=host.weight;
+		}
+		if(totalWeight==0)return -1;
+
+		int overloadedIndex=-1;
+		double maxExcess=0,maxDeficit=0;
+		for(int i=0;i<curHosts.length;i++){
+			if(!curHosts[i].isAvailable())continue;
+			double excess=curHosts[i].connSize.get()-(double)totalSize*curHosts[i].weight/totalWeight;
+			if(excess>maxExcess){
+				maxExcess=excess;
+				overloadedIndex=i;
+			}else if(-excess>maxDeficit){
+				maxDeficit=-excess;
+			}
+		}
+		return maxExcess>=1 && maxDeficit>=1?overloadedIndex:-1;
+	}
+
+	static final class Host {
+		final String url;
+		final int weight;
+		final ConnectionCreateBreaker breaker;
+		final AtomicInteger connSize=new AtomicInteger(0);
+
+		Host(String url,int weight,ConnectionCreateBreaker breaker){
+			this.url=url;
+			this.weight=weight;
+			this.breaker=breaker;
+		}
+		boolean isAvailable(){
+			return breaker==null||breaker.isAvailable();
+		}
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Keep recent pool events in a fixed-size ring buffer out of heap,writing a record
+ * is allocation free and the oldest record is overwritten when buffer full.
+ *
+ * Record layout(32 bytes):sequence(8),time(8),type(2),aux(2),connection id(4),value(8)
+ *
+ * Dump file can be decoded by the main method of this class.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+public final class PoolEventRecorder {
+	static final short TYPE_BORROW=1;//aux:borrow path,value:wait nanoseconds
+	static final short TYPE_RECYCLE=2;
+	static final short TYPE_TRANSFER=3;
+	static final short TYPE_CREATE=4;//value:took nanoseconds
+	static final short TYPE_CREATE_FAIL=5;//value:took nanoseconds
+	static final short TYPE_REMOVE=6;//aux:remove reason
+	static final short TYPE_TEST_FAIL=7;//value:took nanoseconds
+
+	public static final int MAX_SIZE=1<<20;
+	private static final int RECORD_SIZE=32;
+	private static final int FILE_MAGIC=0x42455252;
+	private static final String[] TYPE_NAMES={"unknown","borrow","recycle","transfer","create","create-fail","remove","test-fail"};
+	private static final String[] REMOVE_REASONS={"other","init","bad","idle","closed","reset","destroy","shrink","retire","broken","failover","rebalance","budget"};
+
+	private final int mask;
+	private final ByteBuffer buffer;
+	private final AtomicLong sequence=new AtomicLong(0);
+
+	PoolEventRecorder(int size) {
+		int capacity=1;
+		while(capacity<size)capacity<<=1;
+		mask=capacity-1;
+		buffer=ByteBuffer.allocateDirect(capacity*RECORD_SIZE);
+	}
+	void record(short type,int connId,int aux,long value){
+		long seq=sequence.incrementAndGet();
+		int pos=(int)(seq&mask)*RECORD_SIZE;
+		buffer.putLong(pos,0L);
+		buffer.putLong(pos+8,currentTimeMillis());
+		buffer.putShort(pos+16,type);
+		buffer.putShort(pos+18,(short)aux);
+		buffer.putInt(pos+20,connId);
+		buffer.putLong(pos+24,value);
+		buffer.putLong(pos,seq);//written at last,decoder skips torn record by it
+	}
+	void recordRemove(int connId,String reason){
+		int reasonCode=0;
+		for(int i=1;i<REMOVE_REASONS.length;i++){
+			if(REMOVE_REASONS[i].equals(reason)){
+				reasonCode=i;
+				break;
+			}
+		}
+		record(TYPE_REMOVE,connId,reasonCode,0);
+	}
+
+	//write records to file,file header:magic(4),capacity(4),last sequence(8)
+	void dump(String fileName)throws IOException{
+		FileOutputStream stream=new FileOutputStream(fileName);
+		try {
+			FileChannel channel=stream.getChannel();
+			ByteBuffer header=ByteBuffer.allocate(16);
+			header.putInt(FILE_MAGIC);
+			header.putInt(mask+1);
+			header.putLong(sequence.get());
+			header.flip();
+			channel.write(header);
+			ByteBuffer records=buffer.duplicate();
+			records.clear();
+			channel.write(records);
+		}finally{
+			stream.close();
+		}
+	}
+
+	/**
+	 * decode dump file and print records in sequence order
+	 *
+	 * @param args dump file name
+	 * @throws IOException failed to read dump file
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args==null || args.length==0){
+			System.out.println("Usage:PoolEventRecorder <dump file>");
+			return;
+		}
+
+		DataInputStream stream=new DataInputStream(new FileInputStream(args[0]));
+		try {
+			if(stream.readInt()!=FILE_MAGIC)throw new IOException("Invalid pool event dump file");
+			int capacity=stream.readInt();
+			long lastSeq=stream.readLong();
+			byte[]data=new byte[capacity*RECORD_SIZE];
+			stream.readFully(data);
+			ByteBuffer records=ByteBuffer.wrap(data);
+
+			SimpleDateFormat format=new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+			for(long seq=Math.max(1,lastSeq-capacity+1);seq<=lastSeq;seq++){
+				int pos=(int)(seq&(capacity-1))*RECORD_SIZE;
+				if(records.getLong(pos)!=seq)continue;//overwritten or torn
+
+				short type=records.getShort(pos+16);
+				short aux=records.getShort(pos+18);
+				StringBuilder line=new StringBuilder();
+				line.append(seq).append(' ')
+					.append(format.format(new Date(records.getLong(pos+8)))).append(' ')
+					.append(type>0&&type<TYPE_NAMES.length?TYPE_NAMES[type]:TYPE_NAMES[0])
+					.append(" conn=").append(records.getInt(pos+20));
+				if(type==TYPE_REMOVE)
+					line.append(" reason=").append(aux>=0&&aux<REMOVE_REASONS.length?REMOVE_REASONS[aux]:REMOVE_REASONS[0]);
+				else if(type==TYPE_BORROW)
+					line.append(" path=").append(aux);
+				long value=records.getLong(pos+24);
+				if(value!=0)line.append(" nanos=").append(value);
+				System.out.println(line);
+			}
+		}finally{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+/**
+ * Pool size controller,it samples busy and queued borrowers every second and estimates
+ * demand of connections by Little's law(L=busy+queued),then grows pool at once when borrowers
+ * queued or shrinks it step by step after continuous low load windows.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class PoolSizeController {
+	private static final double GROW_HEADROOM=1.25;
+	private static final double SHRINK_RATIO=0.75;
+	private static final int SHRINK_WINDOWS=2;
+
+	private final int minSize;
+	private final int maxSize;
+	private final int windowSamples;
+	private long usingSum;
+	private long waitingSum;
+	private int sampleCount;
+	private int lowLoadWindows;
+
+	PoolSizeController(int minSize,int maxSize,int windowSamples) {
+		this.minSize=minSize;
+		this.maxSize=maxSize;
+		this.windowSamples=windowSamples;
+	}
+
+	//return true when window is full
+	boolean sample(int usingSize,int waitingSize){
+		usingSum+=usingSize;
+		waitingSum+=waitingSize;
+		return ++sampleCount>=windowSamples;
+	}
+
+	//return new size of pool,current size if not changed
+	int evaluate(int curSize){
+		if(sampleCount==0)return curSize;
+		double demand=(double)(usingSum+waitingSum)/sampleCount;
+		boolean queued=waitingSum>0;
+		usingSum=0;
+		waitingSum=0;
+		sampleCount=0;
+
+		int target=Math.min(maxSize,Math.max(minSize,(int)Math.ceil(demand*GROW_HEADROOM)));
+		if(target>curSize){
+			lowLoadWindows=0;
+			return queued?target:curSize;
+		}else if(target<curSize*SHRINK_RATIO){
+			if(++lowLoadWindows<SHRINK_WINDOWS)return curSize;
+			lowLoadWindows=0;
+			return Math.max(target,curSize-Math.max(1,curSize/4));
+		}else{
+			lowLoadWindows=0;
+			return curSize;
+		}
+	}
+}
@@ -16,16 +16,22 @@
 package cn.beecp.pool;
 
 import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.ResetDialect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import static cn.beecp.PoolEventType.*;
+import static cn.beecp.pool.PoolExceptionList.*;
+import static cn.beecp.util.BeecpUtil.isNullText;
 import static cn.beecp.util.BeecpUtil.oclose;
 import static java.lang.System.arraycopy;
 import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
 
 /**
  * Pooled Connection
@@ -34,14 +40,35 @@ import static java.lang.System.currentTimeMillis;
  * @version 1.0
  */
 class PooledConnection extends StatementCache{
+	final int id;
 	volatile int state;
 	boolean stmCacheValid;
 	Connection rawConn;
 	ProxyConnectionBase proxyConn;
 
 	volatile long lastAccessTime;
+	volatile long lastTestTime;//set by background test
+	volatile long timerDeadline;//next timeout check time in timer wheel
+	long retireTime=Long.MAX_VALUE;//jittered end of life time
+	int useLimit=Integer.MAX_VALUE;//jittered max use count
+	int useCount;
+	volatile boolean retireOnReturn;
+	volatile boolean brokenInd;//fatal exception thrown from proxy objects
+	int groupIndex=-1;//workload group of borrower,counted until returned
+	int timerBucket=-1;
+	PooledConnection timerPrev;
+	PooledConnection timerNext;
 	boolean commitDirtyInd;
 	boolean curAutoCommit;
+	boolean stateCacheInd;//skip setters with same value as raw connection
+	int curTransactionIsolation;
+	boolean curReadOnly;
+	String curCatalog;
+	String curSchema;
+	boolean curCatalogKnown;
+	boolean curSchemaKnown;
+	int curHoldability;
+	boolean curHoldabilityKnown;
 	boolean defaultAutoCommit;
 	int defaultTransactionIsolationCode;
 	boolean defaultReadOnly;
@@ -49,6 +76,14 @@ class PooledConnection extends StatementCache{
 	String defaultSchema;
 	int defaultNetworkTimeout;
 	private ThreadPoolExecutor defaultNetworkTimeoutExecutor;
+	private ResetDialect resetDialect;
+	private BeeDataSourceConfig poolConfig;
+
+	long borrowTime;//nanoseconds,set when borrow or return event enabled
+	boolean returnEventOn;
+	boolean prepareEventOn;
+	boolean executeEventOn;
+	private boolean asyncResetInd;
 
 	private FastConnectionPool pool;
 	private short changedCount;
@@ -57,8 +92,9 @@ class PooledConnection extends StatementCache{
 	private static final boolean[] DEFAULT_IND=new boolean[]{false,false,false,false,false,false};
 	private static Logger log = LoggerFactory.getLogger(PooledConnection.class);
 
-	public PooledConnection(Connection rawConn,int connState,FastConnectionPool connPool,BeeDataSourceConfig config)throws SQLException{
+	public PooledConnection(Connection rawConn,int id,int connState,FastConnectionPool connPool,BeeDataSourceConfig config)throws SQLException{
 		super(config.getPreparedStatementCacheSize());
+		this.id=id;
 		pool=connPool;
 		state=connState;
 		this.rawConn=rawConn;
@@ -71,10 +107,41 @@ class PooledConnection extends StatementCache{
 		defaultSchema=config.getDefaultSchema();
 		defaultNetworkTimeout=pool.getNetworkTimeout();
 		defaultNetworkTimeoutExecutor=pool.getNetworkTimeoutExecutor();
+		resetDialect=pool.getResetDialect();
+		poolConfig=config;
+		asyncResetInd=config.isAsyncReset();
 
 		curAutoCommit=defaultAutoCommit;
+		stateCacheInd=pool.isSessionStateCached();
+		curTransactionIsolation=defaultTransactionIsolationCode;
+		curReadOnly=defaultReadOnly;
+		curCatalog=defaultCatalog;
+		curSchema=defaultSchema;
+		curCatalogKnown=!isNullText(defaultCatalog);//set on raw connection by pool
+		curSchemaKnown=!isNullText(defaultSchema) && pool.isSupportSchema();
 		stmCacheValid = config.getPreparedStatementCacheSize()>0;
+		returnEventOn=(config.getPoolEventMask()&CODE_RETURN)!=0;
+		prepareEventOn=(config.getPoolEventMask()&CODE_PREPARE)!=0;
+		executeEventOn=(config.getPoolEventMask()&CODE_EXECUTE)!=0;
 		lastAccessTime=currentTimeMillis();
+		if(config.getMaxLifetime()>0){
+			long maxLifetime=config.getMaxLifetime();
+			retireTime=lastAccessTime+maxLifetime-(long)(ThreadLocalRandom.current().nextDouble()*maxLifetime/10);
+		}
+		if(config.getMaxUsesPerConnection()>0){
+			int maxUses=config.getMaxUsesPerConnection();
+			useLimit=maxUses-ThreadLocalRandom.current().nextInt(maxUses/10+1);
+		}
+	}
+	//tracked state is seeded from defaults,read it from raw connection when defaults not applied(state cache off if unreadable)
+	void loadCurState() {
+		try{
+			curAutoCommit=rawConn.getAutoCommit();
+			curTransactionIsolation=rawConn.getTransactionIsolation();
+			curReadOnly=rawConn.isReadOnly();
+		}catch(Throwable e){
+			stateCacheInd=false;
+		}
 	}
 	void closeRawConn() {//called by pool
 		try{
@@ -88,6 +155,7 @@ class PooledConnection extends StatementCache{
 			log.error("Connection close error", e);
 		}finally{
 			oclose(rawConn);
+			pool.onRawConnClosed(rawConn);
 		}
 	}
 
@@ -95,6 +163,16 @@ class PooledConnection extends StatementCache{
 	void returnToPoolBySelf()throws SQLException{
 		try{
 			proxyConn=null;
+			useCount++;
+			if(returnEventOn)pool.fireReturnEvent(nanoTime()-borrowTime);
+			if(brokenInd){
+				pool.abandonBrokenOnReturn(this);
+				return;
+			}
+			if(asyncResetInd && (commitDirtyInd || changedCount>0)){//clean connection is recycled at once
+				pool.resetInBackground(this);
+				return;
+			}
 			resetRawConnOnReturn();
 			pool.recycle(this);
 		}catch(SQLException e) {
@@ -102,6 +180,14 @@ class PooledConnection extends StatementCache{
 			throw e;
 		}
 	}
+	//mark connection broken when fatal exception thrown from proxy objects,it is abandoned on return
+	final void checkException(SQLException e){
+		if(brokenInd||e==ConnectionClosedException||e==StatementClosedException||e==ResultSetClosedException)return;
+		if(pool.isFatalException(e)){
+			brokenInd=true;
+			pool.onFatalException();
+		}
+	}
 	void updateAccessTimeWithCommitDirty() {
 		commitDirtyInd=!curAutoCommit;
 		lastAccessTime=currentTimeMillis();
@@ -114,6 +200,12 @@ class PooledConnection extends StatementCache{
 		changedInd[pos]=changed;
 		//lastAccessTime=currentTimeMillis();
 	}
+	void firePrepareEvent(String sql,long beginTime,boolean cacheHit){
+		pool.firePrepareEvent(sql,nanoTime()-beginTime,cacheHit);
+	}
+	void fireExecuteEvent(long beginTime){
+		pool.fireExecuteEvent(nanoTime()-beginTime);
+	}
 	boolean isSupportValidTest() {return pool.isSupportValidTest();}
     boolean isSupportSchema() {
 		return pool.isSupportSchema();
@@ -123,6 +215,10 @@ class PooledConnection extends StatementCache{
 	}
 
 	void resetRawConnOnReturn()throws SQLException {
+		if (resetDialect!=null && (commitDirtyInd || changedCount>0) && resetRawConnByDialect()) {
+			rawConn.clearWarnings();
+			return;
+		}
 		if (!curAutoCommit && commitDirtyInd) {//Roll back when commit dirty
 			rawConn.rollback();
 			commitDirtyInd = false;
@@ -147,6 +243,7 @@ class PooledConnection extends StatementCache{
 				rawConn.setNetworkTimeout(defaultNetworkTimeoutExecutor, defaultNetworkTimeout);
 			//for JDK1.7 end
 
+			resetCurState();
 			changedCount = 0;
 			arraycopy(DEFAULT_IND, 0, changedInd, 0, 6);
 		}//reset end
@@ -154,4 +251,32 @@ class PooledConnection extends StatementCache{
 		//clear warnings
 		rawConn.clearWarnings();
 	}
+	//update tracked session state after changed attributes reset to default
+	private void resetCurState() {
+		if (changedInd[1])curTransactionIsolation = defaultTransactionIsolationCode;
+		if (changedInd[2])curReadOnly = defaultReadOnly;
+		if (changedInd[3]) {
+			curCatalog = defaultCatalog;
+			curCatalogKnown = true;
+		}
+		if (changedInd[4]) {
+			curSchema = defaultSchema;
+			curSchemaKnown = true;
+		}
+	}
+	//reset with dialect,network timeout is reset here(no round trip in most drivers)
+	private boolean resetRawConnByDialect()throws SQLException {
+		boolean rollback=!curAutoCommit && commitDirtyInd;
+		if (!resetDialect.reset(rawConn,rollback,changedInd,poolConfig))return false;
+		commitDirtyInd = false;
+		if (changedCount > 0) {
+			if (changedInd[0])curAutoCommit = defaultAutoCommit;
+			if (changedInd[5]) //reset networkTimeout
+				rawConn.setNetworkTimeout(defaultNetworkTimeoutExecutor, defaultNetworkTimeout);
+			resetCurState();
+			changedCount = 0;
+			arraycopy(DEFAULT_IND, 0, changedInd, 0, 6);
+		}
+		return true;
+	}
 }
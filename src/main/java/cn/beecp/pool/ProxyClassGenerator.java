@@ -289,27 +289,37 @@ public final class ProxyClassGenerator {
 			if (ctMethod.getReturnType() == ctStatementClass) {
 				methodBuffer.append("return new ProxyStatement(delegate."+methodName+"($$),this,pConn);");
 			}else if(ctMethod.getReturnType() == ctPreparedStatementClass){
+				methodBuffer.append("long beginTime=pConn.prepareEventOn?System.nanoTime():0L;");
 				methodBuffer.append("if(pConn.stmCacheValid){");
 				methodBuffer.append("  PsCacheKey key=new PsCacheKey($$);");
 				methodBuffer.append("  PreparedStatement stm=pConn.getPreparedStatement(key);");
+				methodBuffer.append("  boolean cacheHit=stm!=null;");
 				methodBuffer.append("  if(stm==null){");
 				methodBuffer.append("     stm=delegate."+methodName+"($$);");
 				methodBuffer.append("     pConn.putPreparedStatement(key,stm);");
 				methodBuffer.append("   }");
+				methodBuffer.append("   if(pConn.prepareEventOn)pConn.firePrepareEvent($1,beginTime,cacheHit);");
 				methodBuffer.append("   return new ProxyPsStatement(stm,this,pConn,true);");
 				methodBuffer.append("}");
-				methodBuffer.append("return new ProxyPsStatement(delegate."+methodName+"($$),this,pConn,false);");
+				methodBuffer.append("PreparedStatement rawStm=delegate."+methodName+"($$);");
+				methodBuffer.append("if(pConn.prepareEventOn)pConn.firePrepareEvent($1,beginTime,false);");
+				methodBuffer.append("return new ProxyPsStatement(rawStm,this,pConn,false);");
 			}else if(ctMethod.getReturnType() == ctCallableStatementClass){
+				methodBuffer.append("long beginTime=pConn.prepareEventOn?System.nanoTime():0L;");
 				methodBuffer.append("if(pConn.stmCacheValid){");
 				methodBuffer.append("  CsCacheKey key=new CsCacheKey($$);");
 				methodBuffer.append("  CallableStatement stm=(CallableStatement)pConn.getPreparedStatement(key);");
+				methodBuffer.append("  boolean cacheHit=stm!=null;");
 				methodBuffer.append("  if(stm==null){");
 				methodBuffer.append("    stm=delegate."+methodName+"($$);");
 				methodBuffer.append("    pConn.putPreparedStatement(key,stm);");
 				methodBuffer.append("  }");
+				methodBuffer.append("   if(pConn.prepareEventOn)pConn.firePrepareEvent($1,beginTime,cacheHit);");
 				methodBuffer.append("   return new ProxyCsStatement(stm,this,pConn,true);");
 				methodBuffer.append("}");
-				methodBuffer.append("return new ProxyCsStatement(delegate."+methodName+"($$),this,pConn,false);");
+				methodBuffer.append("CallableStatement rawStm=delegate."+methodName+"($$);");
+				methodBuffer.append("if(pConn.prepareEventOn)pConn.firePrepareEvent($1,beginTime,false);");
+				methodBuffer.append("return new ProxyCsStatement(rawStm,this,pConn,false);");
 			}else if (ctMethod.getReturnType() == ctDatabaseMetaDataIntf) {
 				methodBuffer.append("return new ProxyDatabaseMetaData(delegate."+methodName+"($$),this,pConn);");
 			}else if(methodName.equals("close")){
@@ -324,6 +334,7 @@ public final class ProxyClassGenerator {
 			newCtMethodm.setBody(methodBuffer.toString());
 			ctConnectionClassProxyClass.addMethod(newCtMethodm);
 		}
+		addFatalExceptionCheck(classPool,ctConnectionClassProxyClass,ctConBaseClass);
 		return ctConnectionClassProxyClass.toClass();
 	}
 
@@ -361,13 +372,20 @@ public final class ProxyClassGenerator {
 			methodBuffer.append("checkClosed();");
 
 			if (ctMethod.getReturnType() == CtClass.voidType) {
-				methodBuffer.append(delegateName+methodName + "($$);");
-				if(methodName.startsWith("execute"))
+				if(methodName.startsWith("execute")){
+					methodBuffer.append("long beginTime=pConn.executeEventOn?System.nanoTime():0L;");
+					methodBuffer.append(delegateName+methodName + "($$);");
 					methodBuffer.append("pConn.updateAccessTimeWithCommitDirty();");
+					methodBuffer.append("if(pConn.executeEventOn)pConn.fireExecuteEvent(beginTime);");
+				}else{
+					methodBuffer.append(delegateName+methodName + "($$);");
+				}
 			} else {
 				if(methodName.startsWith("execute")){
+					methodBuffer.append("long beginTime=pConn.executeEventOn?System.nanoTime():0L;");
 					methodBuffer.append(ctMethod.getReturnType().getName() + " re="+delegateName+methodName + "($$);");
 					methodBuffer.append("pConn.updateAccessTimeWithCommitDirty();");
+					methodBuffer.append("if(pConn.executeEventOn)pConn.fireExecuteEvent(beginTime);");
 					if (ctMethod.getReturnType() == ctResultSetClass) {
 						methodBuffer.append(" return new ProxyResultSet(re,this,pConn);");
 					}else{
@@ -384,6 +402,7 @@ public final class ProxyClassGenerator {
 			newCtMethodm.setBody(methodBuffer.toString());
 			statementProxyClass.addMethod(newCtMethodm);
 		}
+		addFatalExceptionCheck(classPool,statementProxyClass,ctStatementSuperClass);
 		return statementProxyClass.toClass();
 	}
 
@@ -425,6 +444,7 @@ public final class ProxyClassGenerator {
 			newCtMethodm.setBody(methodBuffer.toString());
 			ctProxyDatabaseMetaDataClass.addMethod(newCtMethodm);
 		}
+		addFatalExceptionCheck(classPool,ctProxyDatabaseMetaDataClass,ctDatabaseMetaDataSuperClass);
 		return ctProxyDatabaseMetaDataClass.toClass();
 	}
 
@@ -474,9 +494,64 @@ public final class ProxyClassGenerator {
 			newCtMethodm.setBody(methodBuffer.toString());
 			ctResultSetClassProxyClass.addMethod(newCtMethodm);
 		}
+		addFatalExceptionCheck(classPool,ctResultSetClassProxyClass,ctResultSetClassSuperClass);
 		return ctResultSetClassProxyClass.toClass();
 	}
 
+	/**
+	 * catch SQLException thrown from proxy methods and let pooled connection check whether it is fatal,
+	 * public methods implemented in super class are overridden to call super method in try block
+	 *
+	 * @param classPool javassist class pool
+	 * @param ctProxyClass proxy class generated
+	 * @param ctSuperClass super class of proxy class
+	 * @throws Exception some error occurred
+	 */
+	private void addFatalExceptionCheck(ClassPool classPool,CtClass ctProxyClass,CtClass ctSuperClass)throws Exception{
+		CtClass ctSQLExceptionClass=classPool.get(SQLException.class.getName());
+		HashSet declaredSignatureSet= new HashSet();
+		CtMethod[] ctDeclaredMethods=ctProxyClass.getDeclaredMethods();
+		for(int i=0;i<ctDeclaredMethods.length;i++)
+			declaredSignatureSet.add(ctDeclaredMethods[i].getName()+ctDeclaredMethods[i].getSignature());
+
+		CtMethod[] ctSuperClassMethods = ctSuperClass.getMethods();
+		for(int i=0;i<ctSuperClassMethods.length;i++){
+			CtMethod ctMethod=ctSuperClassMethods[i];
+			int modifiers=ctMethod.getModifiers();
+			if(Modifier.isPublic(modifiers) && !Modifier.isAbstract(modifiers) && !Modifier.isFinal(modifiers)
+					&& !Modifier.isStatic(modifiers) && !Modifier.isNative(modifiers)
+					&& ctMethod.getDeclaringClass().getName().startsWith("cn.beecp.pool.")
+					&& isFatalCheckMethod(ctMethod,ctSQLExceptionClass)
+					&& declaredSignatureSet.add(ctMethod.getName()+ctMethod.getSignature())){
+				CtMethod newCtMethodm = CtNewMethod.copy(ctMethod, ctProxyClass, null);
+				newCtMethodm.setModifiers(Modifier.PUBLIC);
+				if(ctMethod.getReturnType() == CtClass.voidType)
+					newCtMethodm.setBody("{super."+ctMethod.getName()+"($$);}");
+				else
+					newCtMethodm.setBody("{return super."+ctMethod.getName()+"($$);}");
+				ctProxyClass.addMethod(newCtMethodm);
+			}
+		}
+
+		ctDeclaredMethods=ctProxyClass.getDeclaredMethods();
+		for(int i=0;i<ctDeclaredMethods.length;i++){
+			if(isFatalCheckMethod(ctDeclaredMethods[i],ctSQLExceptionClass))
+				ctDeclaredMethods[i].addCatch("{pConn.checkException($e);throw $e;}",ctSQLExceptionClass);
+		}
+	}
+
+	private boolean isFatalCheckMethod(CtMethod ctMethod,CtClass ctSQLExceptionClass)throws Exception{
+		String methodName=ctMethod.getName();
+		if("close".equals(methodName)||"isClosed".equals(methodName)||"checkClosed".equals(methodName)
+				||"unwrap".equals(methodName)||"isWrapperFor".equals(methodName)||"abort".equals(methodName))
+			return false;
+		CtClass[] exceptionTypes=ctMethod.getExceptionTypes();
+		for(int i=0;i<exceptionTypes.length;i++){
+			if(exceptionTypes[i]==ctSQLExceptionClass)return true;
+		}
+		return false;
+	}
+
 	private void resolveInterfaceMethods(CtClass interfaceClass,LinkedList linkedList,HashSet exitSignatureSet)throws Exception{
 		CtMethod[] ctMethods = interfaceClass.getDeclaredMethods();
 		for(int i=0;i<ctMethods.length;i++){
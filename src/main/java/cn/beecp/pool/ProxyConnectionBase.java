@@ -71,28 +71,75 @@ abstract class ProxyConnectionBase implements Connection{
 		if(!pConn.curAutoCommit && pConn.commitDirtyInd)
 		  throw AutoCommitChangeForbiddennException;
 		
-		delegate.setAutoCommit(autoCommit);
+		if(!pConn.stateCacheInd || autoCommit!=pConn.curAutoCommit)
+			delegate.setAutoCommit(autoCommit);
 		pConn.curAutoCommit = autoCommit;
         	if(autoCommit)pConn.commitDirtyInd=false;
 		pConn.setChangedInd(Pos_AutoCommitInd,autoCommit!=pConn.defaultAutoCommit);
 		pConn.lastAccessTime=currentTimeMillis();
 	}
+	public boolean getAutoCommit() throws SQLException {
+		checkClosed();
+		if(pConn.stateCacheInd)return pConn.curAutoCommit;
+		return delegate.getAutoCommit();
+	}
 	public void setTransactionIsolation(int level) throws SQLException {
 		checkClosed();
-		delegate.setTransactionIsolation(level);
+		if(!pConn.stateCacheInd || level!=pConn.curTransactionIsolation)
+			delegate.setTransactionIsolation(level);
+		pConn.curTransactionIsolation=level;
 		pConn.setChangedInd(Pos_TransactionIsolationInd,level!=pConn.defaultTransactionIsolationCode);
 		pConn.lastAccessTime=currentTimeMillis();
 	}
+	public int getTransactionIsolation() throws SQLException {
+		checkClosed();
+		if(pConn.stateCacheInd)return pConn.curTransactionIsolation;
+		return delegate.getTransactionIsolation();
+	}
 	public void setReadOnly(boolean readOnly) throws SQLException {
 		checkClosed();
-		delegate.setReadOnly(readOnly);
+		if(!pConn.stateCacheInd || readOnly!=pConn.curReadOnly)
+			delegate.setReadOnly(readOnly);
+		pConn.curReadOnly=readOnly;
 		pConn.setChangedInd(Pos_ReadOnlyInd,readOnly!=pConn.defaultReadOnly);
 	}
+	public boolean isReadOnly() throws SQLException {
+		checkClosed();
+		if(pConn.stateCacheInd)return pConn.curReadOnly;
+		return delegate.isReadOnly();
+	}
 	public void setCatalog(String catalog) throws SQLException {
 		checkClosed();
-		delegate.setCatalog(catalog);
+		if(!pConn.stateCacheInd || !pConn.curCatalogKnown || !equalsText(catalog, pConn.curCatalog))
+			delegate.setCatalog(catalog);
+		pConn.curCatalog=catalog;
+		pConn.curCatalogKnown=true;
 		pConn.setChangedInd(Pos_CatalogInd,!equalsText(catalog, pConn.defaultCatalog));
 	}
+	public String getCatalog() throws SQLException {
+		checkClosed();
+		if(!pConn.stateCacheInd)return delegate.getCatalog();
+		if(!pConn.curCatalogKnown){
+			pConn.curCatalog=delegate.getCatalog();
+			pConn.curCatalogKnown=true;
+		}
+		return pConn.curCatalog;
+	}
+	public void setHoldability(int holdability) throws SQLException {
+		checkClosed();
+		delegate.setHoldability(holdability);
+		pConn.curHoldability=holdability;
+		pConn.curHoldabilityKnown=true;
+	}
+	public int getHoldability() throws SQLException {
+		checkClosed();
+		if(!pConn.stateCacheInd)return delegate.getHoldability();
+		if(!pConn.curHoldabilityKnown){
+			pConn.curHoldability=delegate.getHoldability();
+			pConn.curHoldabilityKnown=true;
+		}
+		return pConn.curHoldability;
+	}
 	public boolean isValid(int timeout) throws SQLException {
 		checkClosed();
 		return delegate.isValid(timeout);
@@ -100,9 +147,21 @@ abstract class ProxyConnectionBase implements Connection{
 	//for JDK1.7 begin
 	public void setSchema(String schema) throws SQLException {
 		checkClosed();
-		delegate.setSchema(schema);
+		if(!pConn.stateCacheInd || !pConn.curSchemaKnown || !equalsText(schema, pConn.curSchema))
+			delegate.setSchema(schema);
+		pConn.curSchema=schema;
+		pConn.curSchemaKnown=true;
 		pConn.setChangedInd(Pos_SchemaInd, !equalsText(schema, pConn.defaultSchema));
 	}
+	public String getSchema() throws SQLException {
+		checkClosed();
+		if(!pConn.stateCacheInd)return delegate.getSchema();
+		if(!pConn.curSchemaKnown){
+			pConn.curSchema=delegate.getSchema();
+			pConn.curSchemaKnown=true;
+		}
+		return pConn.curSchema;
+	}
 	public void abort(Executor executor) throws SQLException{
 		checkClosed();
 		if(executor == null) throw new SQLException("executor can't be null");
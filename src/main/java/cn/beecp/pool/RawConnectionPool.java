@@ -21,10 +21,10 @@ import org.slf4j.LoggerFactory;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static cn.beecp.pool.PoolExceptionList.PoolCloseException;
@@ -44,7 +44,7 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
  */
 public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJMXBean {
 	private volatile boolean isShutdown;
-	private Semaphore poolSemaphore;
+	private PoolSemaphore poolSemaphore;
 	private long DefaultMaxWait;
 	private BeeDataSourceConfig poolConfig;
 	private String poolName;
@@ -60,7 +60,7 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJM
 	public void init(BeeDataSourceConfig config){
 		poolConfig = config;
 		DefaultMaxWait = MILLISECONDS.toNanos(poolConfig.getMaxWait());
-		poolSemaphore = new Semaphore(poolConfig.getBorrowConcurrentSize(), poolConfig.isFairMode());
+		poolSemaphore = new PoolSemaphore(poolConfig.getBorrowConcurrentSize(), poolConfig.isFairMode());
 		poolName = !isNullText(config.getPoolName()) ? config.getPoolName(): "RawPool-" + PoolNameIndex.getAndIncrement();
 
 		String mode;
@@ -126,11 +126,15 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJM
 	public boolean isShutdown(){
 		return isShutdown;
 	}
+	public boolean isReady(){
+		return poolConfig!=null && !isShutdown;
+	}
 
 	//******************************** JMX **************************************//
 	// close all connections
 	public void reset() {}
 	public void reset(boolean force) {}
+	public void rollingReset() {}
 	public int getConnTotalSize(){
 		return 0;
 	}
@@ -141,7 +145,7 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJM
 		return 0;
 	}
 	public int getSemaphoreAcquiredSize(){
-		return poolConfig.getBorrowConcurrentSize()-poolSemaphore.availablePermits();
+		return poolSemaphore.getSize()-poolSemaphore.availablePermits();
 	}
 	public int getSemaphoreWaitingSize(){
 		return poolSemaphore.getQueueLength();
@@ -149,6 +153,22 @@ public final class RawConnectionPool implements ConnectionPool, ConnectionPoolJM
 	public int getTransferWaitingSize(){
 		return 0;
 	}
+	public int getPoolMaxSize(){
+		return poolSemaphore.getSize();
+	}
+	public void setPoolMaxSize(int size){
+		setBorrowConcurrentSize(size);
+	}
+	public int getBorrowConcurrentSize(){
+		return poolSemaphore.getSize();
+	}
+	public void setBorrowConcurrentSize(int size){
+		if(size<=0)throw new IllegalArgumentException("Borrow concurrent size must be greater than zero");
+		poolSemaphore.resize(size);
+	}
+	public void dumpRecentEvents(String fileName)throws IOException{
+		throw new IOException("Pool event recorder not supported");
+	}
 	// register JMX
 	private void registerJMX() {
 		if (poolConfig.isEnableJMX()) {
@@ -0,0 +1,152 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.ResetDialect;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static cn.beecp.ResetDialect.*;
+import static cn.beecp.util.BeecpUtil.oclose;
+
+/**
+ * Built-in reset dialects,picked by class name of raw connection(MySQL dialect is probed on it).
+ * Native resets(MySQL COM_RESET_CONNECTION,PostgreSQL DISCARD ALL)are not used,
+ * they restore server defaults and drop server prepared statements held in statement cache.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class ResetDialects {
+
+	private ResetDialects(){}
+
+	/**
+	 * @param rawConn raw connection created by driver
+	 * @return built-in dialect of driver,null if not found
+	 */
+	static ResetDialect forConnection(Connection rawConn) {
+		String className=rawConn.getClass().getName();
+		if(className.startsWith("com.mysql."))
+			return MySQLResetDialect.isSupported(rawConn)?new MySQLResetDialect():null;
+		if(className.startsWith("org.postgresql."))
+			return new PostgreSQLResetDialect();
+		return null;
+	}
+
+	//isolation level name in sql
+	static String isolationName(int isolation) {
+		switch(isolation){
+			case Connection.TRANSACTION_READ_UNCOMMITTED:return "READ UNCOMMITTED";
+			case Connection.TRANSACTION_READ_COMMITTED:return "READ COMMITTED";
+			case Connection.TRANSACTION_REPEATABLE_READ:return "REPEATABLE READ";
+			case Connection.TRANSACTION_SERIALIZABLE:return "SERIALIZABLE";
+			default:return null;
+		}
+	}
+
+	static void execute(Connection con,String sql)throws SQLException {
+		Statement st=con.createStatement();
+		try{
+			st.execute(sql);
+		}finally{
+			oclose(st);
+		}
+	}
+
+	//autoCommit,isolation and readOnly are reset in one 'SET'(MySQL 5.7.20+,driver with useLocalSessionState=false)
+	static final class MySQLResetDialect implements ResetDialect {
+		private volatile boolean disabled;//'SET' rejected by server,changed attributes are reset by pool
+
+		/**
+		 * probe on first connection:server accepts 'transaction_isolation'(not on MySQL before 5.7.20,MariaDB before 11.1)
+		 * and driver reads isolation from server(cached by driver when useLocalSessionState=true,then it goes stale)
+		 *
+		 * @param con raw connection with default attributes
+		 * @return true,dialect can be used on connections of the driver
+		 */
+		static boolean isSupported(Connection con) {
+			try{
+				int curIsolation=con.getTransactionIsolation();
+				String curName=isolationName(curIsolation);
+				if(curName==null)return false;
+				int probeIsolation=(curIsolation==Connection.TRANSACTION_READ_COMMITTED)?
+						Connection.TRANSACTION_REPEATABLE_READ:Connection.TRANSACTION_READ_COMMITTED;
+
+				execute(con,"SET SESSION transaction_isolation='"+isolationName(probeIsolation).replace(' ','-')+'\'');
+				try{
+					return con.getTransactionIsolation()==probeIsolation;
+				}finally{//restore by sql,setter may be skipped by stale cache
+					execute(con,"SET SESSION transaction_isolation='"+curName.replace(' ','-')+'\'');
+				}
+			}catch(Throwable e){
+				return false;
+			}
+		}
+
+		public boolean reset(Connection con,boolean rollback,boolean[] changed,BeeDataSourceConfig config)throws SQLException {
+			if(disabled)return false;
+			StringBuilder sql=new StringBuilder(96);
+			if(changed[AUTO_COMMIT])
+				sql.append("autocommit=").append(config.isDefaultAutoCommit()?1:0);
+			if(changed[TRANSACTION_ISOLATION]){
+				String isolation=isolationName(config.getDefaultTransactionIsolationCode());
+				if(isolation==null)return false;
+				if(sql.length()>0)sql.append(',');
+				sql.append("SESSION transaction_isolation='").append(isolation.replace(' ','-')).append('\'');
+			}
+			if(changed[READ_ONLY]){
+				if(sql.length()>0)sql.append(',');
+				sql.append("SESSION transaction_read_only=").append(config.isDefaultReadOnly()?1:0);
+			}
+
+			if(rollback)con.rollback();//'autocommit=1' commits current transaction,so rollback firstly
+			if(sql.length()>0){
+				try{
+					execute(con,"SET "+sql);
+				}catch(SQLException e){
+					String state=e.getSQLState();
+					if(state==null||!state.startsWith("08"))disabled=true;//not a link failure
+					return false;
+				}
+			}
+			if(changed[CATALOG])con.setCatalog(config.getDefaultCatalog());
+			if(changed[SCHEMA])con.setSchema(config.getDefaultSchema());
+			return true;
+		}
+	}
+
+	//rollback and isolation are sent in one query,driver keeps autoCommit and readOnly on client side
+	static final class PostgreSQLResetDialect implements ResetDialect {
+		public boolean reset(Connection con,boolean rollback,boolean[] changed,BeeDataSourceConfig config)throws SQLException {
+			String isolation=changed[TRANSACTION_ISOLATION]?isolationName(config.getDefaultTransactionIsolationCode()):null;
+			if(rollback && isolation!=null){//transaction is open,so driver not begin a new one before the query
+				execute(con,"ROLLBACK;SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL "+isolation);
+			}else{
+				if(rollback)con.rollback();
+				if(changed[TRANSACTION_ISOLATION])con.setTransactionIsolation(config.getDefaultTransactionIsolationCode());
+			}
+			if(changed[AUTO_COMMIT])con.setAutoCommit(config.isDefaultAutoCommit());
+			if(changed[READ_ONLY])con.setReadOnly(config.isDefaultReadOnly());
+			if(changed[CATALOG])con.setCatalog(config.getDefaultCatalog());
+			if(changed[SCHEMA])con.setSchema(config.getDefaultSchema());
+			return true;
+		}
+	}
+}
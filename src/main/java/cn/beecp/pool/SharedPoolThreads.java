@@ -0,0 +1,111 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Threads shared by some pools(shards or credential pools):one timer thread for housekeeping tasks,
+ * connection creation threads,network timeout threads and one JVM exit hook,so thread count does not
+ * grow with pool count.Creation threads and network timeout threads exit after idle,they are not shutdown
+ * with pools,owner shutdown them after all pools closed.
+ *
+ * @author Chris.liao
+ * @version 1.0
+ */
+public final class SharedPoolThreads {
+
+	/**
+	 * timer thread of housekeeping tasks(idle scan,background test,auto sizing)
+	 */
+	private final ScheduledThreadPoolExecutor timerExecutor;
+
+	/**
+	 * connection creation threads,a pool has at most one creation task in them
+	 */
+	private final ThreadPoolExecutor createExecutor;
+
+	/**
+	 * executor for 'setNetworkTimeout' of raw connections
+	 */
+	private final ThreadPoolExecutor networkTimeoutExecutor;
+
+	/**
+	 * pools closed by exit hook
+	 */
+	private final CopyOnWriteArrayList<FastConnectionPool> poolList=new CopyOnWriteArrayList<FastConnectionPool>();
+
+	/**
+	 * one exit hook for all pools
+	 */
+	private final Thread exitHook;
+
+	//Constructor
+	public SharedPoolThreads(String name,int createThreadSize){
+		if(createThreadSize<=0)throw new IllegalArgumentException("Creation thread size must be greater than zero");
+		int processors=Runtime.getRuntime().availableProcessors();
+		timerExecutor=new ScheduledThreadPoolExecutor(1,new FastConnectionPool.PoolThreadThreadFactory(name+"Housekeeping"));
+		createExecutor=new ThreadPoolExecutor(createThreadSize,createThreadSize,15,SECONDS,new LinkedBlockingQueue<Runnable>(),
+				new FastConnectionPool.PoolThreadThreadFactory(name+"ConnectionAdd"));
+		createExecutor.allowCoreThreadTimeOut(true);
+		networkTimeoutExecutor=new ThreadPoolExecutor(processors,processors,15,SECONDS,new LinkedBlockingQueue<Runnable>(),
+				new FastConnectionPool.PoolThreadThreadFactory(name+"NetworkTimeout"));
+		networkTimeoutExecutor.allowCoreThreadTimeOut(true);
+
+		exitHook=new Thread(){
+			public void run(){
+				for(FastConnectionPool pool:poolList)
+					pool.shutdown();
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(exitHook);
+	}
+
+	ScheduledThreadPoolExecutor getTimerExecutor(){
+		return timerExecutor;
+	}
+	ThreadPoolExecutor getCreateExecutor(){
+		return createExecutor;
+	}
+	ThreadPoolExecutor getNetworkTimeoutExecutor(){
+		return networkTimeoutExecutor;
+	}
+	void register(FastConnectionPool pool){
+		poolList.addIfAbsent(pool);
+	}
+	void unregister(FastConnectionPool pool){
+		poolList.remove(pool);
+	}
+
+	public boolean isShutdown(){
+		return timerExecutor.isShutdown();
+	}
+	//shutdown threads,called after all pools closed
+	public void shutdown(){
+		timerExecutor.shutdownNow();
+		createExecutor.shutdownNow();
+		networkTimeoutExecutor.shutdownNow();
+		try {
+			Runtime.getRuntime().removeShutdownHook(exitHook);
+		} catch (IllegalStateException e) {//JVM is exiting
+		}
+	}
+}
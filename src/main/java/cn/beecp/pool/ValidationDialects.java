@@ -0,0 +1,78 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.ValidationDialect;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static cn.beecp.util.BeecpUtil.oclose;
+
+/**
+ * Built-in validation dialects,picked by class name of raw connection
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class ValidationDialects {
+
+	private ValidationDialects(){}
+
+	/**
+	 * @param rawConn raw connection created by driver
+	 * @return built-in dialect of driver,null if not found
+	 */
+	static ValidationDialect forConnection(Connection rawConn) {
+		String className=rawConn.getClass().getName();
+		if(className.startsWith("com.mysql."))
+			return new MySQLPingDialect();
+		if(className.startsWith("org.postgresql."))
+			return new PostgreSQLEmptyQueryDialect();
+		return null;
+	}
+
+	//MySQL Connector/J sends a protocol ping(COM_PING) for statement started with '/* ping */'
+	static final class MySQLPingDialect implements ValidationDialect {
+		public boolean isAlive(Connection con,int timeout)throws SQLException {
+			Statement st=con.createStatement();
+			try{
+				if(timeout>0)st.setQueryTimeout(timeout);
+				st.execute("/* ping */ SELECT 1");
+				return true;
+			}finally{
+				oclose(st);
+			}
+		}
+	}
+
+	//PostgreSQL driver sends an empty query without parse,it begins a transaction when auto commit is off
+	static final class PostgreSQLEmptyQueryDialect implements ValidationDialect {
+		public boolean isAlive(Connection con,int timeout)throws SQLException {
+			boolean autoCommit=con.getAutoCommit();
+			Statement st=con.createStatement();
+			try{
+				if(timeout>0)st.setQueryTimeout(timeout);
+				st.execute("");
+			}finally{
+				oclose(st);
+			}
+			if(!autoCommit)con.rollback();
+			return true;
+		}
+	}
+}
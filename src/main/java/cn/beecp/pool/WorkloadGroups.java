@@ -0,0 +1,142 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Workload groups sharing one pool,parsed from 'workloadGroups' like 'interactive:3:4,batch:1',
+ * every group has a weight and a guaranteed minimum size of using connections.
+ *
+ * A group over its minimum can take a connection only when enough capacity is left for unmet minimums
+ * of other groups,returned connections are handed off to waiter of the group with least using size per
+ * weight,so busy groups share pool by weight and an idle group leaves its share to others.
+ * Each group has its own borrow gateway sized by its weight from borrow concurrent size,so a spike of one
+ * group can't block borrowers of others and pool wide concurrency stays near borrow concurrent size.
+ *
+ * @author Chris.Liao
+ * @version 1.0
+ */
+final class WorkloadGroups {
+	private final String[] names;
+	private final int[] weights;
+	private final int[] minSizes;
+	private final AtomicIntegerArray usingSizes;
+	private final int totalWeight;
+	private final PoolSemaphore[] semaphores;
+
+	//Constructor,first group is for borrowers without group or with unknown group
+	WorkloadGroups(String groups,int concurrentSize,boolean fair){
+		String[] groupTexts=groups.trim().split("\\s*,\\s*");
+		names=new String[groupTexts.length];
+		weights=new int[groupTexts.length];
+		minSizes=new int[groupTexts.length];
+		usingSizes=new AtomicIntegerArray(groupTexts.length);
+		semaphores=new PoolSemaphore[groupTexts.length];
+		int weightSum=0;
+		for(int i=0;i<groupTexts.length;i++){
+			String[] items=groupTexts[i].split("\\s*:\\s*");
+			names[i]=items[0];
+			weights[i]=items.length>1?Integer.parseInt(items[1]):1;
+			minSizes[i]=items.length>2?Integer.parseInt(items[2]):0;
+			weightSum+=weights[i];
+		}
+		totalWeight=weightSum;
+		for(int i=0;i<groupTexts.length;i++)
+			semaphores[i]=new PoolSemaphore(getSemaphoreSize(i,concurrentSize),fair);
+	}
+	//share of group in concurrent size by weight,at least one;remainder of rounding down goes to leading groups
+	int getSemaphoreSize(int index,int concurrentSize){
+		int size=concurrentSize*weights[index]/totalWeight;
+		int remainder=concurrentSize;
+		for(int i=0;i<weights.length;i++)
+			remainder-=concurrentSize*weights[i]/totalWeight;
+		if(index<remainder)size++;
+		return Math.max(1,size);
+	}
+	int indexOf(String name){
+		if(name!=null){
+			for(int i=0;i<names.length;i++)
+				if(names[i].equals(name))return i;
+		}
+		return 0;
+	}
+	int size(){
+		return names.length;
+	}
+	String getName(int index){
+		return names[index];
+	}
+	int getUsingSize(int index){
+		return usingSizes.get(index);
+	}
+	//using size per weight,lower one is more under-served
+	double getLoad(int index){
+		return (double)usingSizes.get(index)/weights[index];
+	}
+	//count one using connection to group when it can take one,check and count are done in one CAS loop
+	boolean tryTake(int index,int maxSize){
+		while(true){
+			int usingSize=usingSizes.get(index);
+			if(!canTake(index,usingSize,maxSize))return false;
+			if(usingSizes.compareAndSet(index,usingSize,usingSize+1))return true;
+		}
+	}
+	void onReturn(int index){
+		usingSizes.decrementAndGet(index);
+	}
+	//hint for hand-off,true when group may take one now;counted by tryTake
+	boolean canTake(int index,int maxSize){
+		return canTake(index,usingSizes.get(index),maxSize);
+	}
+	//true when group is under its minimum or capacity is left after unmet minimums of other groups
+	private boolean canTake(int index,int usingSize,int maxSize){
+		if(usingSize<minSizes[index])return true;
+		int totalSize=usingSize,reservedSize=0;
+		for(int i=0;i<minSizes.length;i++){
+			if(i==index)continue;
+			int otherUsingSize=usingSizes.get(i);
+			totalSize+=otherUsingSize;
+			if(otherUsingSize<minSizes[i])reservedSize+=minSizes[i]-otherUsingSize;
+		}
+		return totalSize+reservedSize<maxSize;
+	}
+
+	PoolSemaphore getSemaphore(int index){
+		return semaphores[index];
+	}
+	void resizeSemaphores(int concurrentSize){
+		for(int i=0;i<semaphores.length;i++)
+			semaphores[i].resize(getSemaphoreSize(i,concurrentSize));
+	}
+	boolean existBorrower(){
+		for(PoolSemaphore semaphore:semaphores)
+			if(semaphore.getSize()>semaphore.availablePermits()||semaphore.hasQueuedThreads())return true;
+		return false;
+	}
+	int getSemaphoreAcquiredSize(){
+		int size=0;
+		for(PoolSemaphore semaphore:semaphores)
+			size+=semaphore.getSize()-semaphore.availablePermits();
+		return size;
+	}
+	int getSemaphoreWaitingSize(){
+		int size=0;
+		for(PoolSemaphore semaphore:semaphores)
+			size+=semaphore.getQueueLength();
+		return size;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class RoutingReplicaTest extends TestCase {
+
+	public void testHoldTimeDecay() throws Exception {
+		BeeRoutingDataSource.Replica replica = new BeeRoutingDataSource.Replica(null);
+		long time = SECONDS.toNanos(100);
+		replica.recordHoldTime(MILLISECONDS.toNanos(100), time);
+		if (replica.getHoldTime(time) != MILLISECONDS.toNanos(100))
+			TestUtil.assertError("hold time expect value:%s,actual value:%s", MILLISECONDS.toNanos(100), replica.getHoldTime(time));
+
+		long holdTime = replica.getHoldTime(time + BeeRoutingDataSource.Replica.HOLD_TIME_HALF_LIFE);
+		if (Math.abs(holdTime - MILLISECONDS.toNanos(50)) > 1)
+			TestUtil.assertError("hold time expect value:%s,actual value:%s", MILLISECONDS.toNanos(50), holdTime);
+	}
+
+	public void testSlowReplicaPickedAgain() throws Exception {
+		BeeRoutingDataSource.Replica slow = new BeeRoutingDataSource.Replica(null);
+		BeeRoutingDataSource.Replica fast = new BeeRoutingDataSource.Replica(null);
+		long time = SECONDS.toNanos(100);
+		slow.recordHoldTime(MILLISECONDS.toNanos(100), time);
+		fast.recordHoldTime(MILLISECONDS.toNanos(10), time);
+
+		//only fast replica picked and sampled
+		for (int i = 0; i < 30; i++) {
+			time += SECONDS.toNanos(1);
+			fast.recordHoldTime(MILLISECONDS.toNanos(10), time);
+		}
+		if (slow.getHoldTime(time) >= fast.getHoldTime(time))
+			TestUtil.assertError("slow replica starved,hold time:%s,fast replica:%s", slow.getHoldTime(time), fast.getHoldTime(time));
+	}
+}
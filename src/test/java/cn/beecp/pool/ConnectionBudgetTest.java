@@ -0,0 +1,55 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+public class ConnectionBudgetTest extends TestCase {
+
+	public void testAcquireAndRelease() throws Exception {
+		ConnectionBudget budget = new ConnectionBudget(2);
+		if (!budget.tryAcquire(null) || !budget.tryAcquire(null))
+			TestUtil.assertError("permit not acquired under budget size");
+		if (budget.tryAcquire(null))
+			TestUtil.assertError("permit acquired over budget size");
+		if (budget.getUsedSize() != 2)
+			TestUtil.assertError("used size expect value:%s,actual value:%s", 2, budget.getUsedSize());
+
+		budget.release();
+		if (budget.getUsedSize() != 1)
+			TestUtil.assertError("used size expect value:%s,actual value:%s", 1, budget.getUsedSize());
+		if (!budget.tryAcquire(null))
+			TestUtil.assertError("released permit not acquired");
+	}
+
+	public void testStarved() throws Exception {
+		ConnectionBudget budget = new ConnectionBudget(1);
+		if (budget.isStarved(null))
+			TestUtil.assertError("budget starved without waiting pool");
+		budget.tryAcquire(null);
+		if (budget.isStarved(null))
+			TestUtil.assertError("budget starved without waiting pool");
+	}
+
+	public void testInvalidSize() throws Exception {
+		try {
+			new ConnectionBudget(0);
+			TestUtil.assertError("budget created with zero size");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
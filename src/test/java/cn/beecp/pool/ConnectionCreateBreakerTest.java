@@ -0,0 +1,70 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.sql.SQLException;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+public class ConnectionCreateBreakerTest extends TestCase {
+
+	private static boolean isRejected(ConnectionCreateBreaker breaker) {
+		try {
+			breaker.beforeCreate();
+			return false;
+		} catch (SQLException e) {
+			return true;
+		}
+	}
+
+	public void testOpenAfterThreshold() throws Exception {
+		ConnectionCreateBreaker breaker = new ConnectionCreateBreaker(2, 50L, 200L);
+		breaker.onFailure(new SQLException("fail1"));
+		if (breaker.isOpen()) TestUtil.assertError("breaker opened before threshold");
+		breaker.onFailure(new SQLException("fail2"));
+		if (!breaker.isOpen()) TestUtil.assertError("breaker not opened at threshold");
+		if (!isRejected(breaker)) TestUtil.assertError("creation not rejected by open breaker");
+	}
+
+	public void testSingleProbe() throws Exception {
+		ConnectionCreateBreaker breaker = new ConnectionCreateBreaker(1, 50L, 200L);
+		breaker.onFailure(new SQLException("fail"));
+		Thread.sleep(80L);
+		if (!breaker.isAvailable()) TestUtil.assertError("breaker not available after backoff");
+		if (isRejected(breaker)) TestUtil.assertError("probe creation rejected");
+		if (!isRejected(breaker)) TestUtil.assertError("second creation allowed during probe");
+
+		breaker.onSuccess();
+		if (breaker.isOpen()) TestUtil.assertError("breaker not closed after probe success");
+		if (isRejected(breaker)) TestUtil.assertError("creation rejected by closed breaker");
+	}
+
+	public void testRuntimeFailureOnProbe() throws Exception {
+		ConnectionCreateBreaker breaker = new ConnectionCreateBreaker(1, 50L, 200L);
+		breaker.onFailure(new SQLException("fail"));
+		Thread.sleep(80L);
+		if (isRejected(breaker)) TestUtil.assertError("probe creation rejected");
+		breaker.onFailure(new IllegalStateException("runtime fail"));
+
+		//probe resolved,breaker reopened with doubled backoff
+		if (!isRejected(breaker)) TestUtil.assertError("creation not rejected after probe failure");
+		Thread.sleep(60L);
+		if (breaker.isAvailable()) TestUtil.assertError("backoff not doubled after probe failure");
+		Thread.sleep(80L);
+		if (isRejected(breaker)) TestUtil.assertError("breaker stuck after runtime failure on probe");
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import static cn.beecp.pool.PoolObjectsState.CONNECTION_IDLE;
+
+public class ConnectionTimerWheelTest extends TestCase {
+	private FastConnectionPool pool;
+	private BeeDataSourceConfig config;
+
+	public void setUp() throws Throwable {
+		pool = new FastConnectionPool();// not initialized,only supplies defaults to pooled connections
+		config = new BeeDataSourceConfig();
+	}
+
+	private PooledConnection newConn(int id) throws Exception {
+		return new PooledConnection(null, id, CONNECTION_IDLE, pool, config);
+	}
+
+	public void testExpireByDeadline() throws Exception {
+		ConnectionTimerWheel wheel = new ConnectionTimerWheel(8, 1000L, 0L);
+		PooledConnection c1 = newConn(1);
+		PooledConnection c2 = newConn(2);
+		wheel.schedule(c1, 2500L);
+		wheel.schedule(c2, 9500L);// one round later,same bucket as tick 1
+
+		List<PooledConnection> expiredList = new ArrayList<PooledConnection>();
+		wheel.pollExpired(1999L, expiredList);
+		if (!expiredList.isEmpty())
+			TestUtil.assertError("expired size expect value:%s,actual value:%s", 0, expiredList.size());
+
+		wheel.pollExpired(2600L, expiredList);
+		if (expiredList.size() != 1 || expiredList.get(0) != c1)
+			TestUtil.assertError("expired connection expect value:%s,actual value:%s", c1.id, expiredList);
+		if (c1.timerBucket != -1)
+			TestUtil.assertError("expired connection is not unlinked");
+
+		expiredList.clear();
+		wheel.pollExpired(9600L, expiredList);
+		if (expiredList.size() != 1 || expiredList.get(0) != c2)
+			TestUtil.assertError("expired connection expect value:%s,actual value:%s", c2.id, expiredList);
+	}
+
+	public void testCancelAndReschedule() throws Exception {
+		ConnectionTimerWheel wheel = new ConnectionTimerWheel(8, 1000L, 0L);
+		PooledConnection c1 = newConn(1);
+		PooledConnection c2 = newConn(2);
+		wheel.schedule(c1, 3000L);
+		wheel.schedule(c2, 3000L);
+		wheel.cancel(c1);
+		wheel.schedule(c2, 6000L);// moved to later bucket
+
+		List<PooledConnection> expiredList = new ArrayList<PooledConnection>();
+		wheel.pollExpired(4000L, expiredList);
+		if (!expiredList.isEmpty())
+			TestUtil.assertError("expired size expect value:%s,actual value:%s", 0, expiredList.size());
+		wheel.pollExpired(6000L, expiredList);
+		if (expiredList.size() != 1 || expiredList.get(0) != c2)
+			TestUtil.assertError("expired connection expect value:%s,actual value:%s", c2.id, expiredList);
+	}
+
+	public void testPassedDeadline() throws Exception {
+		ConnectionTimerWheel wheel = new ConnectionTimerWheel(8, 1000L, 5000L);
+		PooledConnection c1 = newConn(1);
+		wheel.schedule(c1, 1000L);// passed,checked at next tick
+
+		List<PooledConnection> expiredList = new ArrayList<PooledConnection>();
+		wheel.pollExpired(5100L, expiredList);
+		if (expiredList.size() != 1)
+			TestUtil.assertError("expired size expect value:%s,actual value:%s", 1, expiredList.size());
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+
+public class MultiHostConnectionFactoryTest extends TestCase {
+	private static final String HOST1 = "jdbc:mock://host1";
+	private static final String HOST2 = "jdbc:mock://host2";
+
+	private final MockConnectionFactory connFactory = new MockConnectionFactory();
+	private final AtomicInteger host1Connects = new AtomicInteger();
+	private volatile boolean host1Down;
+
+	private Driver createDriver() {
+		return (Driver) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Driver.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("connect".equals(method.getName())) {
+					if (HOST1.equals(args[0])) {
+						host1Connects.incrementAndGet();
+						if (host1Down) throw new SQLException("host1 down", "08001");
+					}
+					return connFactory.create();
+				}
+				return null;
+			}
+		});
+	}
+
+	public void testFailover() throws Exception {
+		host1Down = true;
+		host1Connects.set(0);
+		MultiHostConnectionFactory factory = new MultiHostConnectionFactory(new String[]{HOST1, HOST2}, null,
+				createDriver(), new Properties(), 1, 60000L, 60000L);
+
+		Connection con1 = factory.create();//host1 failed,created on host2
+		Connection con2 = factory.create();//host1 skipped in backoff
+		if (factory.getHostConnectionSize(1) != 2)
+			TestUtil.assertError("host2 connection size expect value:%s,actual value:%s", 2, factory.getHostConnectionSize(1));
+		if (factory.getHostConnectionSize(0) != 0)
+			TestUtil.assertError("host1 connection size expect value:%s,actual value:%s", 0, factory.getHostConnectionSize(0));
+		if (factory.isHostAvailable(0))
+			TestUtil.assertError("host1 available in backoff");
+		if (host1Connects.get() != 1)
+			TestUtil.assertError("host1 connect count expect value:%s,actual value:%s", 1, host1Connects.get());
+		con1.close();
+		con2.close();
+	}
+
+	public void testHostSizeOnFailedSetup() throws Exception {
+		host1Down = false;
+		Driver driver = (Driver) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Driver.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("connect".equals(method.getName())) return createSetupFailedConnection(connFactory.create());
+				return null;
+			}
+		});
+		MultiHostConnectionFactory factory = new MultiHostConnectionFactory(new String[]{HOST1}, null,
+				driver, new Properties(), 0, 60000L, 60000L);
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(0);
+		config.setMaxWait(200);
+		BeeDataSource ds = new BeeDataSource(config);
+		try {
+			try {
+				ds.getConnection().close();
+				TestUtil.assertError("connection setup should fail");
+			} catch (IllegalStateException e) {
+			}
+			if (factory.getHostConnectionSize(0) != 0)
+				TestUtil.assertError("host1 connection size expect value:%s,actual value:%s", 0, factory.getHostConnectionSize(0));
+		} finally {
+			ds.close();
+		}
+	}
+
+	//connection failed on setting default isolation with a runtime exception
+	private static Connection createSetupFailedConnection(final Connection rawConn) {
+		return (Connection) Proxy.newProxyInstance(MultiHostConnectionFactoryTest.class.getClassLoader(), new Class[]{Connection.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("setTransactionIsolation".equals(method.getName())) throw new IllegalStateException("mock setup failed");
+				try {
+					return method.invoke(rawConn, args);
+				} catch (InvocationTargetException e) {
+					throw e.getTargetException();
+				}
+			}
+		});
+	}
+
+	public void testAllHostsDown() throws Exception {
+		host1Down = true;
+		host1Connects.set(0);
+		MultiHostConnectionFactory factory = new MultiHostConnectionFactory(new String[]{HOST1}, null,
+				createDriver(), new Properties(), 1, 60000L, 60000L);
+		try {
+			factory.create();
+			TestUtil.assertError("connection created on down host");
+		} catch (SQLException e) {
+		}
+		try {
+			factory.create();
+			TestUtil.assertError("connection created on down host");
+		} catch (SQLException e) {
+		}
+		if (host1Connects.get() != 1)
+			TestUtil.assertError("host1 connect count expect value:%s,actual value:%s", 1, host1Connects.get());
+	}
+}
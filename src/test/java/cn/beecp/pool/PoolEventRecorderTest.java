@@ -0,0 +1,90 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+public class PoolEventRecorderTest extends TestCase {
+	private File dumpFile;
+
+	public void setUp() throws Throwable {
+		dumpFile = File.createTempFile("beecp-events", ".dump");
+	}
+
+	public void tearDown() throws Throwable {
+		dumpFile.delete();
+	}
+
+	public void testRingOverwrite() throws Exception {
+		PoolEventRecorder recorder = new PoolEventRecorder(3);// capacity rounded up to 4
+		for (int i = 1; i <= 5; i++)
+			recorder.record(PoolEventRecorder.TYPE_CREATE, i, 0, i * 10L);
+		recorder.dump(dumpFile.getPath());
+
+		DataInputStream stream = new DataInputStream(new FileInputStream(dumpFile));
+		try {
+			stream.readInt();// magic
+			int capacity = stream.readInt();
+			long lastSeq = stream.readLong();
+			if (capacity != 4)
+				TestUtil.assertError("capacity expect value:%s,actual value:%s", 4, capacity);
+			if (lastSeq != 5)
+				TestUtil.assertError("last sequence expect value:%s,actual value:%s", 5, lastSeq);
+
+			byte[] data = new byte[capacity * 32];
+			stream.readFully(data);
+			ByteBuffer records = ByteBuffer.wrap(data);
+			int pos = (int) (1 & (capacity - 1)) * 32;// slot of sequence 1 reused by sequence 5
+			if (records.getLong(pos) != 5)
+				TestUtil.assertError("slot sequence expect value:%s,actual value:%s", 5, records.getLong(pos));
+			if (records.getInt(pos + 20) != 5)
+				TestUtil.assertError("connection id expect value:%s,actual value:%s", 5, records.getInt(pos + 20));
+			if (records.getLong(pos + 24) != 50L)
+				TestUtil.assertError("value expect value:%s,actual value:%s", 50, records.getLong(pos + 24));
+		} finally {
+			stream.close();
+		}
+	}
+
+	public void testRemoveReason() throws Exception {
+		PoolEventRecorder recorder = new PoolEventRecorder(4);
+		recorder.recordRemove(7, "retire");
+		recorder.recordRemove(8, "no-such-reason");
+		recorder.dump(dumpFile.getPath());
+
+		DataInputStream stream = new DataInputStream(new FileInputStream(dumpFile));
+		try {
+			stream.skipBytes(16);
+			byte[] data = new byte[4 * 32];
+			stream.readFully(data);
+			ByteBuffer records = ByteBuffer.wrap(data);
+			if (records.getShort(32 + 16) != PoolEventRecorder.TYPE_REMOVE)
+				TestUtil.assertError("record type expect value:%s,actual value:%s", PoolEventRecorder.TYPE_REMOVE, records.getShort(32 + 16));
+			if (records.getShort(32 + 18) != 8)// index of 'retire'
+				TestUtil.assertError("remove reason expect value:%s,actual value:%s", 8, records.getShort(32 + 18));
+			if (records.getShort(64 + 18) != 0)// unknown reason
+				TestUtil.assertError("remove reason expect value:%s,actual value:%s", 0, records.getShort(64 + 18));
+		} finally {
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+public class PoolSemaphoreTest extends TestCase {
+
+	public void testGrow() throws Exception {
+		PoolSemaphore semaphore = new PoolSemaphore(2, false);
+		semaphore.acquire();
+		semaphore.resize(4);
+		if (semaphore.getSize() != 4)
+			TestUtil.assertError("size expect value:%s,actual value:%s", 4, semaphore.getSize());
+		if (semaphore.availablePermits() != 3)
+			TestUtil.assertError("available permits expect value:%s,actual value:%s", 3, semaphore.availablePermits());
+	}
+
+	public void testShrinkWithAcquired() throws Exception {
+		PoolSemaphore semaphore = new PoolSemaphore(4, false);
+		semaphore.acquire(3);
+		semaphore.resize(2);//acquired permits over new size are not reclaimed
+		if (semaphore.availablePermits() != -1)
+			TestUtil.assertError("available permits expect value:%s,actual value:%s", -1, semaphore.availablePermits());
+		if (semaphore.tryAcquire())
+			TestUtil.assertError("permit acquired over new size");
+
+		semaphore.release(3);
+		if (semaphore.availablePermits() != 2)
+			TestUtil.assertError("available permits expect value:%s,actual value:%s", 2, semaphore.availablePermits());
+	}
+}
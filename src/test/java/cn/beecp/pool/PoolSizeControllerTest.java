@@ -0,0 +1,70 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+public class PoolSizeControllerTest extends TestCase {
+
+	private static int evaluateWindow(PoolSizeController controller, int curSize, int usingSize, int waitingSize) {
+		while (!controller.sample(usingSize, waitingSize)) ;
+		return controller.evaluate(curSize);
+	}
+
+	public void testGrowOnQueued() throws Exception {
+		PoolSizeController controller = new PoolSizeController(2, 20, 2);
+		int newSize = evaluateWindow(controller, 10, 8, 4);//demand 12,headroom 1.25
+		if (newSize != 15)
+			TestUtil.assertError("new size expect value:%s,actual value:%s", 15, newSize);
+
+		newSize = evaluateWindow(controller, 10, 12, 0);//no borrower queued
+		if (newSize != 10)
+			TestUtil.assertError("new size expect value:%s,actual value:%s", 10, newSize);
+
+		newSize = evaluateWindow(controller, 10, 30, 30);
+		if (newSize != 20)
+			TestUtil.assertError("new size expect value:%s,actual value:%s", 20, newSize);
+	}
+
+	public void testShrinkStepByStep() throws Exception {
+		PoolSizeController controller = new PoolSizeController(2, 20, 2);
+		int newSize = evaluateWindow(controller, 20, 2, 0);
+		if (newSize != 20)
+			TestUtil.assertError("new size expect value:%s,actual value:%s", 20, newSize);
+		newSize = evaluateWindow(controller, 20, 2, 0);
+		if (newSize != 15)
+			TestUtil.assertError("new size expect value:%s,actual value:%s", 15, newSize);
+
+		evaluateWindow(controller, 3, 0, 0);
+		newSize = evaluateWindow(controller, 3, 0, 0);
+		if (newSize != 2)
+			TestUtil.assertError("new size expect value:%s,actual value:%s", 2, newSize);
+		evaluateWindow(controller, 2, 0, 0);
+		newSize = evaluateWindow(controller, 2, 0, 0);//not below min size
+		if (newSize != 2)
+			TestUtil.assertError("new size expect value:%s,actual value:%s", 2, newSize);
+	}
+
+	public void testShrinkWindowsReset() throws Exception {
+		PoolSizeController controller = new PoolSizeController(2, 20, 2);
+		evaluateWindow(controller, 20, 2, 0);
+		evaluateWindow(controller, 20, 14, 0);//normal load breaks low load windows
+		int newSize = evaluateWindow(controller, 20, 2, 0);
+		if (newSize != 20)
+			TestUtil.assertError("new size expect value:%s,actual value:%s", 20, newSize);
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.ResetDialect;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class ResetDialectsTest extends TestCase {
+
+	//simulate session of MySQL driver
+	private static class SessionHandler implements InvocationHandler {
+		boolean localSessionState;//driver returns cached isolation
+		boolean variableRejected;//server without 'transaction_isolation'
+		int serverIsolation = Connection.TRANSACTION_REPEATABLE_READ;
+		int cachedIsolation = Connection.TRANSACTION_REPEATABLE_READ;
+		final List<String> sqlList = new ArrayList<String>();
+
+		Connection newConnection() {
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, this);
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("getTransactionIsolation".equals(name))
+				return localSessionState ? cachedIsolation : serverIsolation;
+			if ("createStatement".equals(name))
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Statement.class}, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("execute".equals(method.getName())) {
+							execute((String) args[0]);
+							return Boolean.FALSE;
+						}
+						return null;
+					}
+				});
+			return null;
+		}
+
+		private void execute(String sql) throws SQLException {
+			sqlList.add(sql);
+			if (sql.indexOf("transaction_") >= 0 && variableRejected)
+				throw new SQLException("Unknown system variable 'transaction_isolation'", "HY000");
+			if (sql.indexOf("READ-COMMITTED") >= 0) serverIsolation = Connection.TRANSACTION_READ_COMMITTED;
+			else if (sql.indexOf("REPEATABLE-READ") >= 0) serverIsolation = Connection.TRANSACTION_REPEATABLE_READ;
+		}
+	}
+
+	public void testProbe() throws Exception {
+		SessionHandler handler = new SessionHandler();
+		if (!ResetDialects.MySQLResetDialect.isSupported(handler.newConnection()))
+			TestUtil.assertError("probe failed on supported session");
+		if (handler.serverIsolation != Connection.TRANSACTION_REPEATABLE_READ)
+			TestUtil.assertError("isolation not restored after probe");
+
+		handler = new SessionHandler();
+		handler.localSessionState = true;
+		if (ResetDialects.MySQLResetDialect.isSupported(handler.newConnection()))
+			TestUtil.assertError("probe passed with driver cached session state");
+		if (handler.serverIsolation != Connection.TRANSACTION_REPEATABLE_READ)
+			TestUtil.assertError("isolation not restored after probe");
+
+		handler = new SessionHandler();
+		handler.variableRejected = true;
+		if (ResetDialects.MySQLResetDialect.isSupported(handler.newConnection()))
+			TestUtil.assertError("probe passed on server without variable");
+	}
+
+	//dialect not handled reset(like MySQL dialect disabled after probe or rejection)
+	private static class RejectedDialect implements ResetDialect {
+		int callCount;
+		Connection rawConn;
+
+		public boolean reset(Connection con, boolean rollback, boolean[] changed, BeeDataSourceConfig config) {
+			callCount++;
+			rawConn = con;
+			return false;
+		}
+	}
+
+	public void testPoolResetOnRejected() throws Exception {
+		RejectedDialect dialect = new RejectedDialect();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new MockConnectionFactory());
+		config.setInitialSize(1);
+		config.setMaxActive(1);
+		config.setResetDialect(dialect);
+		BeeDataSource ds = new BeeDataSource(config);
+		try {
+			Connection con = ds.getConnection();
+			try {
+				con.setAutoCommit(false);
+				con.setReadOnly(true);
+			} finally {
+				BeecpUtil.oclose(con);
+			}
+			if (dialect.callCount != 1)
+				TestUtil.assertError("dialect call count expect value:%s,actual value:%s", 1, dialect.callCount);
+			if (!dialect.rawConn.getAutoCommit())
+				TestUtil.assertError("autoCommit not reset by pool after dialect rejected");
+			if (dialect.rawConn.isReadOnly())
+				TestUtil.assertError("readOnly not reset by pool after dialect rejected");
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testFallbackOnRejected() throws Exception {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		SessionHandler handler = new SessionHandler();
+		handler.variableRejected = true;
+		Connection con = handler.newConnection();
+		boolean[] changed = new boolean[6];
+		changed[ResetDialect.TRANSACTION_ISOLATION] = true;
+
+		ResetDialect dialect = new ResetDialects.MySQLResetDialect();
+		if (dialect.reset(con, false, changed, config))
+			TestUtil.assertError("reset handled by rejected dialect");
+		if (dialect.reset(con, false, changed, config))
+			TestUtil.assertError("reset handled by rejected dialect");
+		if (handler.sqlList.size() != 1)
+			TestUtil.assertError("sql count expect value:%s,actual value:%s", 1, handler.sqlList.size());
+	}
+}
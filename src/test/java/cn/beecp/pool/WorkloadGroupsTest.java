@@ -0,0 +1,101 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.pool;
+
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkloadGroupsTest extends TestCase {
+
+	public void testParse() throws Exception {
+		WorkloadGroups groups = new WorkloadGroups(" default , interactive:3:4 ,batch:1", 8, false);
+		if (groups.size() != 3)
+			TestUtil.assertError("group size expect value:%s,actual value:%s", 3, groups.size());
+		if (groups.indexOf("interactive") != 1)
+			TestUtil.assertError("group index expect value:%s,actual value:%s", 1, groups.indexOf("interactive"));
+		if (groups.indexOf("unknown") != 0 || groups.indexOf(null) != 0)
+			TestUtil.assertError("unknown group not mapped to first group");
+	}
+
+	public void testSemaphoreSplitByWeight() throws Exception {
+		WorkloadGroups groups = new WorkloadGroups("default,interactive:3,batch:1", 7, false);
+		checkSemaphoreSizes(groups, new int[]{2, 4, 1}, 7);//1,4,1 with remainder 1 to first group
+
+		groups.resizeSemaphores(4);//0,2,0 with remainder 2 to leading groups,at least one
+		checkSemaphoreSizes(groups, new int[]{1, 3, 1}, 5);
+	}
+
+	public void testReserveMinOfOtherGroups() throws Exception {
+		WorkloadGroups groups = new WorkloadGroups("default,interactive:1:2", 4, false);
+		if (!groups.tryTake(0, 4) || !groups.tryTake(0, 4))
+			TestUtil.assertError("group failed to take under reserved size");
+		if (groups.tryTake(0, 4))
+			TestUtil.assertError("group took connection reserved for minimum of other group");
+		if (!groups.tryTake(1, 4) || !groups.tryTake(1, 4))
+			TestUtil.assertError("group failed to take under its minimum");
+		if (groups.tryTake(1, 4))
+			TestUtil.assertError("group took connection over max size");
+
+		groups.onReturn(0);
+		if (!groups.canTake(1, 4) || !groups.tryTake(1, 4))
+			TestUtil.assertError("group failed to take returned connection");
+		if (groups.getUsingSize(1) != 3)
+			TestUtil.assertError("using size expect value:%s,actual value:%s", 3, groups.getUsingSize(1));
+	}
+
+	public void testConcurrentTake() throws Exception {
+		final int maxSize = 5;
+		final WorkloadGroups groups = new WorkloadGroups("default", maxSize, false);
+		final AtomicInteger takenSize = new AtomicInteger();
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		Thread[] threads = new Thread[20];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						startLatch.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					if (groups.tryTake(0, maxSize)) takenSize.incrementAndGet();
+				}
+			};
+			threads[i].start();
+		}
+		startLatch.countDown();
+		for (Thread thread : threads) thread.join();
+
+		if (takenSize.get() != maxSize)
+			TestUtil.assertError("taken size expect value:%s,actual value:%s", maxSize, takenSize.get());
+		if (groups.getUsingSize(0) != maxSize)
+			TestUtil.assertError("using size expect value:%s,actual value:%s", maxSize, groups.getUsingSize(0));
+	}
+
+	private static void checkSemaphoreSizes(WorkloadGroups groups, int[] expectSizes, int expectTotal) {
+		int total = 0;
+		for (int i = 0; i < expectSizes.length; i++) {
+			int size = groups.getSemaphore(i).getSize();
+			if (size != expectSizes[i])
+				TestUtil.assertError("semaphore size of group(" + groups.getName(i) + ") expect value:%s,actual value:%s", expectSizes[i], size);
+			total += size;
+		}
+		if (total != expectTotal)
+			TestUtil.assertError("total semaphore size expect value:%s,actual value:%s", expectTotal, total);
+	}
+}
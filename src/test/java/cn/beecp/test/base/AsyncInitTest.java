@@ -0,0 +1,81 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class AsyncInitTest extends TestCase {
+
+	public void testReadyAfterInitialCreation() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		factory.createDelay = 300;
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(2);
+		config.setMaxActive(4);
+		config.setAsyncInit(true);
+
+		BeeDataSource ds = new BeeDataSource(config);
+		try {
+			if (ds.isReady())
+				TestUtil.assertError("data source ready before initial connections created");
+
+			Connection con = ds.getConnection();//served on startup
+			BeecpUtil.oclose(con);
+
+			Thread.sleep(1000);
+			if (!ds.isReady())
+				TestUtil.assertError("data source not ready after initial connections created");
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			if (pool.getConnTotalSize() < 2)
+				TestUtil.assertError("total size expect not less than:%s,actual value:%s", 2, pool.getConnTotalSize());
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testReadyOnFirstConnectionAfterFailure() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		factory.failMode = MockConnectionFactory.FAIL_SQL;
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(2);
+		config.setAsyncInit(true);
+
+		BeeDataSource ds = new BeeDataSource(config);
+		try {
+			Thread.sleep(500);
+			if (ds.isReady())
+				TestUtil.assertError("data source ready without connections");
+
+			factory.failMode = MockConnectionFactory.FAIL_NONE;
+			Connection con = ds.getConnection();
+			BeecpUtil.oclose(con);
+			if (!ds.isReady())
+				TestUtil.assertError("data source not ready after first connection created");
+		} finally {
+			ds.close();
+		}
+	}
+}
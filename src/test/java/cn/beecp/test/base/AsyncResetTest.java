@@ -0,0 +1,101 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.ResetDialect;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class AsyncResetTest extends TestCase {
+
+	public void testRecycleAfterReset() throws Exception {
+		BlockedDialect dialect = new BlockedDialect();
+		BeeDataSource ds = createDataSource(dialect);
+		try {
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			Connection con = ds.getConnection();
+			con.setAutoCommit(false);
+			BeecpUtil.oclose(con);//returned while reset blocked in background
+
+			Thread.sleep(200);
+			if (pool.getConnIdleSize() != 0)
+				TestUtil.assertError("idle size expect value:%s,actual value:%s", 0, pool.getConnIdleSize());
+
+			dialect.resetLatch.countDown();
+			Thread.sleep(200);
+			if (pool.getConnIdleSize() != 1)
+				TestUtil.assertError("idle size expect value:%s,actual value:%s", 1, pool.getConnIdleSize());
+			con = ds.getConnection();
+			try {
+				if (!con.getAutoCommit())
+					TestUtil.assertError("autoCommit not reset before recycle");
+			} finally {
+				BeecpUtil.oclose(con);
+			}
+		} finally {
+			dialect.resetLatch.countDown();
+			ds.close();
+		}
+	}
+
+	public void testRecycleCleanAtOnce() throws Exception {
+		BlockedDialect dialect = new BlockedDialect();
+		BeeDataSource ds = createDataSource(dialect);
+		try {
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			Connection con = ds.getConnection();
+			BeecpUtil.oclose(con);
+			if (pool.getConnIdleSize() != 1)
+				TestUtil.assertError("idle size expect value:%s,actual value:%s", 1, pool.getConnIdleSize());
+		} finally {
+			dialect.resetLatch.countDown();
+			ds.close();
+		}
+	}
+
+	private static BeeDataSource createDataSource(ResetDialect dialect) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new MockConnectionFactory());
+		config.setInitialSize(1);
+		config.setMaxActive(1);
+		config.setAsyncReset(true);
+		config.setResetDialect(dialect);
+		return new BeeDataSource(config);
+	}
+
+	//reset ends after latch released
+	static final class BlockedDialect implements ResetDialect {
+		final CountDownLatch resetLatch = new CountDownLatch(1);
+
+		public boolean reset(Connection con, boolean rollback, boolean[] changed, BeeDataSourceConfig config) throws SQLException {
+			try {
+				resetLatch.await();
+			} catch (InterruptedException e) {
+				throw new SQLException(e);
+			}
+			return false;//changed attributes reset by pool
+		}
+	}
+}
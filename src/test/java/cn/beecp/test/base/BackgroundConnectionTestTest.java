@@ -0,0 +1,102 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.PoolEventListener;
+import cn.beecp.PoolEventType;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class BackgroundConnectionTestTest extends TestCase {
+
+	public void testSkipTestOnBorrow() throws Exception {
+		TestListener listener = new TestListener();
+		BeeDataSource ds = createDataSource(listener, 1000);
+		try {
+			Thread.sleep(1300);//idle connection tested in background
+			int testCount = listener.testCount.get();
+			if (testCount == 0)
+				TestUtil.assertError("idle connection not tested in background");
+
+			Connection con = ds.getConnection();
+			BeecpUtil.oclose(con);
+			if (listener.testCount.get() != testCount)
+				TestUtil.assertError("test count expect value:%s,actual value:%s", testCount, listener.testCount.get());
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testOnBorrowWithoutBackground() throws Exception {
+		TestListener listener = new TestListener();
+		BeeDataSource ds = createDataSource(listener, 0);
+		try {
+			Thread.sleep(300);//over connection test interval
+			Connection con = ds.getConnection();
+			BeecpUtil.oclose(con);
+			if (listener.testCount.get() != 1)
+				TestUtil.assertError("test count expect value:%s,actual value:%s", 1, listener.testCount.get());
+		} finally {
+			ds.close();
+		}
+	}
+
+	private static BeeDataSource createDataSource(TestListener listener, long backgroundTestInterval) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new MockConnectionFactory());
+		config.setInitialSize(1);
+		config.setMaxActive(1);
+		config.setConnectionTestInterval(100);
+		config.setBackgroundTestInterval(backgroundTestInterval);
+		config.setPoolEventListener(listener);
+		config.setPoolEventTypes(PoolEventType.EVENT_TEST);
+		return new BeeDataSource(config);
+	}
+
+	static final class TestListener implements PoolEventListener {
+		final AtomicInteger testCount = new AtomicInteger();
+
+		public void onConnectionTest(String poolName, long tookNanos, boolean active) {
+			testCount.incrementAndGet();
+		}
+
+		public void onBorrow(String poolName, int path, long waitNanos, SQLException cause) {
+		}
+
+		public void onReturn(String poolName, long holdNanos) {
+		}
+
+		public void onConnectionCreate(String poolName, long tookNanos, SQLException cause) {
+		}
+
+		public void onConnectionClose(String poolName, String reason) {
+		}
+
+		public void onStatementPrepare(String poolName, String sql, long tookNanos, boolean cacheHit) {
+		}
+
+		public void onStatementExecute(String poolName, long tookNanos) {
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class ConnectionCreateFailureTest extends TestCase {
+	private BeeDataSource ds;
+	private MockConnectionFactory factory;
+
+	public void setUp() throws Throwable {
+		factory = new MockConnectionFactory();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(0);
+		config.setMaxActive(2);
+		config.setBorrowConcurrentSize(2);
+		config.setMaxWait(500);
+		config.setCreateBreakerThreshold(0);//failures below are not rejected by breaker
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testNoBreakerByDefault() throws Exception {
+		MockConnectionFactory failFactory = new MockConnectionFactory();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(failFactory);
+		config.setInitialSize(0);
+		config.setMaxWait(500);
+		BeeDataSource failDs = new BeeDataSource(config);
+		try {
+			failFactory.failMode = MockConnectionFactory.FAIL_SQL;
+			for (int i = 0; i < 5; i++) {
+				try {
+					BeecpUtil.oclose(failDs.getConnection());
+					TestUtil.assertError("connection creation should fail");
+				} catch (SQLException e) {
+				}
+			}
+			if (failFactory.createCallCount.get() != 5)
+				TestUtil.assertError("create call count expect value:%s,actual value:%s", 5, failFactory.createCallCount.get());
+
+			failFactory.failMode = MockConnectionFactory.FAIL_NONE;
+			BeecpUtil.oclose(failDs.getConnection());//not rejected by breaker after recovered
+		} finally {
+			failDs.close();
+		}
+	}
+
+	public void testCapacityAfterRuntimeFailure() throws Exception {
+		factory.failMode = MockConnectionFactory.FAIL_RUNTIME;
+		for (int i = 0; i < 3; i++) {
+			Connection con = null;
+			try {
+				con = ds.getConnection();
+				TestUtil.assertError("connection creation should fail");
+			} catch (RuntimeException e) {
+			} finally {
+				if (con != null) BeecpUtil.oclose(con);
+			}
+		}
+
+		factory.failMode = MockConnectionFactory.FAIL_NONE;
+		Connection con1 = null;
+		Connection con2 = null;
+		try {
+			con1 = ds.getConnection();
+			con2 = ds.getConnection();//failed if reserved slots were not given back
+		} finally {
+			if (con1 != null) BeecpUtil.oclose(con1);
+			if (con2 != null) BeecpUtil.oclose(con2);
+		}
+		if (factory.createdCount.get() != 2)
+			TestUtil.assertError("created count expect value:%s,actual value:%s", 2, factory.createdCount.get());
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class ConnectionHoldTimeoutBrokenTest extends TestCase {
+	private BeeDataSource ds;
+	private MockConnectionFactory factory;
+
+	public void setUp() throws Throwable {
+		factory = new MockConnectionFactory();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(0);
+		config.setHoldIdleTimeout(200);
+		config.setIdleCheckTimeInterval(100L);
+		config.setIdleCheckTimeInitDelay(0);
+		config.setWaitTimeToClearPool(0);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void test() throws InterruptedException, Exception {
+		Connection con = null;
+		Statement st = null;
+		try {
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			con = ds.getConnection();
+			st = con.createStatement();
+			factory.down = true;
+			try {
+				st.execute("SELECT 1");
+				TestUtil.assertError("must throw link failure");
+			} catch (SQLException e) {
+			}
+			factory.down = false;
+
+			Thread.sleep(1000);
+			if (pool.getConnUsingSize() != 0)
+				TestUtil.assertError("Using connections not as expected 0 after hold timeout");
+			if (pool.getConnIdleSize() != 0)
+				TestUtil.assertError("Broken connection recycled to pool after hold timeout");
+			if (factory.closedCount.get() != 1)
+				TestUtil.assertError("closed count expect value:%s,actual value:%s", 1, factory.closedCount.get());
+		} finally {
+			if (st != null)
+				BeecpUtil.oclose(st);
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+}
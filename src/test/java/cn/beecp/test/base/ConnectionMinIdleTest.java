@@ -0,0 +1,67 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class ConnectionMinIdleTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new MockConnectionFactory());
+		config.setInitialSize(0);
+		config.setMinIdle(2);
+		config.setMaxActive(5);
+		config.setBorrowConcurrentSize(5);
+		config.setIdleTimeout(300);
+		config.setIdleCheckTimeInterval(100L);
+		config.setIdleCheckTimeInitDelay(0);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testShrinkToMinIdle() throws Exception {
+		FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+		Connection[] cons = new Connection[5];
+		try {
+			for (int i = 0; i < cons.length; i++)
+				cons[i] = ds.getConnection();
+		} finally {
+			for (Connection con : cons)
+				if (con != null) BeecpUtil.oclose(con);
+		}
+		if (pool.getConnTotalSize() != 5)
+			TestUtil.assertError("total size expect value:%s,actual value:%s", 5, pool.getConnTotalSize());
+
+		Thread.sleep(1000);//idle ones over min idle are closed in one tick
+		if (pool.getConnTotalSize() != 2)
+			TestUtil.assertError("total size expect value:%s,actual value:%s", 2, pool.getConnTotalSize());
+		if (pool.getConnIdleSize() != 2)
+			TestUtil.assertError("idle size expect value:%s,actual value:%s", 2, pool.getConnIdleSize());
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.PoolEventListener;
+import cn.beecp.PoolEventType;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class ConnectionRetireTest extends TestCase {
+
+	public void testLifetimeRetireInBudget() throws Exception {
+		RetireListener listener = new RetireListener();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new MockConnectionFactory());
+		config.setInitialSize(20);
+		config.setMaxActive(20);
+		config.setMaxLifetime(1000);
+		config.setMaxRetirePercent(10);//two in one tick
+		config.setPoolEventListener(listener);
+		config.setPoolEventTypes(PoolEventType.EVENT_CLOSE);
+		BeeDataSource ds = new BeeDataSource(config);
+		try {
+			Thread.sleep(4500);
+		} finally {
+			ds.close();
+		}
+
+		List<Long> retireTimes = listener.getRetireTimes();
+		if (retireTimes.size() < 4)
+			TestUtil.assertError("retired count expect not less than:%s,actual value:%s", 4, retireTimes.size());
+
+		int tickRetiredSize = 1;
+		for (int i = 1; i < retireTimes.size(); i++) {
+			if (retireTimes.get(i) - retireTimes.get(i - 1) > 500) {//next tick
+				tickRetiredSize = 1;
+			} else if (++tickRetiredSize > 2) {
+				TestUtil.assertError("retired count in one tick expect not more than:%s,actual value:%s", 2, tickRetiredSize);
+			}
+		}
+	}
+
+	public void testUseCountRetire() throws Exception {
+		RetireListener listener = new RetireListener();
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(1);
+		config.setMaxActive(1);
+		config.setMaxUsesPerConnection(10);
+		config.setPoolEventListener(listener);
+		config.setPoolEventTypes(PoolEventType.EVENT_CLOSE);
+		BeeDataSource ds = new BeeDataSource(config);
+		try {
+			Thread.sleep(1500);//retire budget filled by timer
+			for (int i = 0; i < 10; i++) {
+				Connection con = ds.getConnection();
+				BeecpUtil.oclose(con);
+			}
+			if (listener.getRetireTimes().size() != 1)
+				TestUtil.assertError("retired count expect value:%s,actual value:%s", 1, listener.getRetireTimes().size());
+
+			Connection con = ds.getConnection();//replaced by a new one
+			BeecpUtil.oclose(con);
+			if (factory.createdCount.get() != 2)
+				TestUtil.assertError("created count expect value:%s,actual value:%s", 2, factory.createdCount.get());
+		} finally {
+			ds.close();
+		}
+	}
+
+	static final class RetireListener implements PoolEventListener {
+		private final List<Long> retireTimes = new ArrayList<Long>();
+
+		synchronized List<Long> getRetireTimes() {
+			return new ArrayList<Long>(retireTimes);
+		}
+
+		public synchronized void onConnectionClose(String poolName, String reason) {
+			if ("retire".equals(reason)) retireTimes.add(System.currentTimeMillis());
+		}
+
+		public void onBorrow(String poolName, int path, long waitNanos, SQLException cause) {
+		}
+
+		public void onReturn(String poolName, long holdNanos) {
+		}
+
+		public void onConnectionCreate(String poolName, long tookNanos, SQLException cause) {
+		}
+
+		public void onConnectionTest(String poolName, long tookNanos, boolean active) {
+		}
+
+		public void onStatementPrepare(String poolName, String sql, long tookNanos, boolean cacheHit) {
+		}
+
+		public void onStatementExecute(String poolName, long tookNanos) {
+		}
+	}
+}
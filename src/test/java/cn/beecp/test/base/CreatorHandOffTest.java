@@ -0,0 +1,121 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class CreatorHandOffTest extends TestCase {
+	private static final long MAX_WAIT = 3000;
+
+	public void testHandOffConnection() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSource ds = createDataSource(factory);
+		try {
+			WaitThread waiter = breakOnlyConnection(ds, factory, false);
+			if (waiter.con == null)
+				TestUtil.assertError("waiter not got connection,cause:" + waiter.cause);
+			BeecpUtil.oclose(waiter.con);
+			if (waiter.tookTime >= MAX_WAIT)
+				TestUtil.assertError("wait time expect less than:%s,actual value:%s", MAX_WAIT, waiter.tookTime);
+			if (factory.createdCount.get() != 2)
+				TestUtil.assertError("created count expect value:%s,actual value:%s", 2, factory.createdCount.get());
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testHandOffCreateFailure() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSource ds = createDataSource(factory);
+		try {
+			WaitThread waiter = breakOnlyConnection(ds, factory, true);
+			if (waiter.con != null) {
+				BeecpUtil.oclose(waiter.con);
+				TestUtil.assertError("waiter got connection on create failure");
+			}
+			if (waiter.cause == null || !"08001".equals(waiter.cause.getSQLState()))
+				TestUtil.assertError("waiter not got create exception,cause:" + waiter.cause);
+			if (waiter.tookTime >= MAX_WAIT)
+				TestUtil.assertError("wait time expect less than:%s,actual value:%s", MAX_WAIT, waiter.tookTime);
+		} finally {
+			ds.close();
+		}
+	}
+
+	private static BeeDataSource createDataSource(MockConnectionFactory factory) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(1);
+		config.setMaxActive(1);
+		config.setMaxWait(MAX_WAIT);
+		return new BeeDataSource(config);
+	}
+
+	//only connection is broken and removed on return,creation thread creates one for the waiter
+	private static WaitThread breakOnlyConnection(BeeDataSource ds, MockConnectionFactory factory, boolean createFail) throws Exception {
+		Connection con = ds.getConnection();
+		WaitThread waiter = new WaitThread(ds);
+		try {
+			waiter.start();
+			Thread.sleep(200);//waiter in wait queue
+
+			factory.down = true;
+			Statement st = con.createStatement();
+			try {
+				st.execute("select 1 from dual");
+			} catch (SQLException e) {
+			} finally {
+				BeecpUtil.oclose(st);
+			}
+			factory.down = false;
+			if (createFail) factory.failMode = MockConnectionFactory.FAIL_SQL;
+		} finally {
+			BeecpUtil.oclose(con);
+		}
+		waiter.join();
+		return waiter;
+	}
+
+	static final class WaitThread extends Thread {
+		private BeeDataSource ds;
+		Connection con;
+		SQLException cause;
+		long tookTime;
+
+		WaitThread(BeeDataSource ds) {
+			this.ds = ds;
+		}
+
+		public void run() {
+			long beginTime = System.currentTimeMillis();
+			try {
+				con = ds.getConnection();
+			} catch (SQLException e) {
+				cause = e;
+			}
+			tookTime = System.currentTimeMillis() - beginTime;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.DataSourceConnectionFactory;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockDataSource;
+import cn.beecp.util.BeecpUtil;
+
+public class CredentialPoolsTest extends TestCase {
+	private BeeDataSource ds;
+	private MockDataSource driverDs;
+
+	public void setUp() throws Throwable {
+		driverDs = new MockDataSource();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new DataSourceConnectionFactory(driverDs, "app", "app"));
+		config.setInitialSize(0);
+		config.setMaxActive(4);
+		config.setBorrowConcurrentSize(4);
+		config.setMaxWait(1000);
+		config.setCredentialPoolSize(2);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testEvictAndFull() throws Exception {
+		BeecpUtil.oclose(ds.getConnection("t1", "p"));
+		BeecpUtil.oclose(ds.getConnection("t2", "p"));
+		Connection con2 = null;
+		Connection con3 = null;
+		try {
+			con2 = ds.getConnection("t2", "p");
+			con3 = ds.getConnection("t3", "p");//pool of t1 closed
+			try {
+				BeecpUtil.oclose(ds.getConnection("t4", "p"));
+				TestUtil.assertError("pool created over credential pool size");
+			} catch (SQLException e) {
+			}
+		} finally {
+			if (con2 != null) BeecpUtil.oclose(con2);
+			if (con3 != null) BeecpUtil.oclose(con3);
+		}
+		if (!driverDs.userList.contains("t3"))
+			TestUtil.assertError("connection not created with credential t3");
+	}
+
+	public void testPasswordChange() throws Exception {
+		Connection con = ds.getConnection("u1", "p1");
+		try {
+			try {
+				BeecpUtil.oclose(ds.getConnection("u1", "p2"));
+				TestUtil.assertError("connection borrowed from pool of other password");
+			} catch (SQLException e) {
+			}
+		} finally {
+			BeecpUtil.oclose(con);
+		}
+
+		BeecpUtil.oclose(ds.getConnection("u1", "p2"));//idle pool of old password replaced
+		if (!driverDs.credentialList.contains("u1/p2"))
+			TestUtil.assertError("connection not created with new password of u1");
+	}
+
+	public void testEvictRace() throws Exception {
+		final String[] users = {"r1", "r2", "r3"};
+		final List<Throwable> errorList = new ArrayList<Throwable>();
+		final CountDownLatch latch = new CountDownLatch(6);
+		for (int i = 0; i < 6; i++) {
+			final int threadNo = i;
+			new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < 200; j++) {
+							Connection con = null;
+							try {
+								con = ds.getConnection(users[(threadNo + j) % users.length], "p");
+							} catch (SQLException e) {
+								if (e.getMessage() == null || e.getMessage().indexOf("reached max size") < 0) {
+									synchronized (errorList) {
+										errorList.add(e);
+									}
+								}
+							} finally {
+								if (con != null) BeecpUtil.oclose(con);
+							}
+						}
+					} finally {
+						latch.countDown();
+					}
+				}
+			}.start();
+		}
+		latch.await();
+		if (!errorList.isEmpty())
+			TestUtil.assertError("borrow failed on evicted pool:" + errorList.get(0));
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class FatalExceptionTest extends TestCase {
+
+	public void testDropOnReturn() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSource ds = createDataSource(factory, 1, "none");
+		try {
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			useOnFailure(ds, factory);
+			if (factory.closedCount.get() != 1)
+				TestUtil.assertError("closed count expect value:%s,actual value:%s", 1, factory.closedCount.get());
+			if (pool.getConnTotalSize() != 0)
+				TestUtil.assertError("total size expect value:%s,actual value:%s", 0, pool.getConnTotalSize());
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testKeepOnNonFatalException() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(1);
+		config.setFatalSQLStates("57P01");//link failure(08S01)not in list
+		BeeDataSource ds = new BeeDataSource(config);
+		try {
+			useOnFailure(ds, factory);
+			if (factory.closedCount.get() != 0)
+				TestUtil.assertError("closed count expect value:%s,actual value:%s", 0, factory.closedCount.get());
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testEvictIdleAfterFatal() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSource ds = createDataSource(factory, 3, "evict");
+		try {
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			useOnFailure(ds, factory);
+			Thread.sleep(500);//idle ones evicted and replaced in background
+			if (factory.closedCount.get() != 3)
+				TestUtil.assertError("closed count expect value:%s,actual value:%s", 3, factory.closedCount.get());
+			if (pool.getConnTotalSize() != 2)
+				TestUtil.assertError("total size expect value:%s,actual value:%s", 2, pool.getConnTotalSize());
+		} finally {
+			ds.close();
+		}
+	}
+
+	private static BeeDataSource createDataSource(MockConnectionFactory factory, int size, String idleAction) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(size);
+		config.setMaxActive(size);
+		config.setFatalErrorIdleAction(idleAction);
+		return new BeeDataSource(config);
+	}
+
+	//statement fails with link failure(SQLState:08S01)
+	private static void useOnFailure(BeeDataSource ds, MockConnectionFactory factory) throws SQLException {
+		Connection con = ds.getConnection();
+		Statement st = null;
+		try {
+			st = con.createStatement();
+			factory.down = true;
+			st.execute("select 1 from dual");
+			TestUtil.assertError("statement executed on failure");
+		} catch (SQLException e) {
+		} finally {
+			factory.down = false;
+			if (st != null) BeecpUtil.oclose(st);
+			BeecpUtil.oclose(con);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+
+public class InitialConnectionsTest extends TestCase {
+
+	public void testDefaultSerialCreation() throws Exception {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		if (config.getInitialConcurrentSize() != 1)
+			TestUtil.assertError("initial concurrent size expect value:%s,actual value:%s", 1, config.getInitialConcurrentSize());
+	}
+
+	public void testSerialSkipFailure() throws Exception {
+		checkPartialPool(1);
+	}
+
+	public void testParallelSkipFailure() throws Exception {
+		checkPartialPool(3);
+	}
+
+	public void testParallelProbeOnce() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		factory.createDelay = 50;//creations end together,then all reach driver probe
+		factory.validDelay = 100;
+		BeeDataSource ds = createDataSource(factory, 4, 4, true);
+		try {
+			if (factory.validCallCount.get() != 1)
+				TestUtil.assertError("isValid probe count expect value:%s,actual value:%s", 1, factory.validCallCount.get());
+		} finally {
+			ds.close();
+		}
+	}
+
+	//second creation fails,others go on when not fail fast
+	private void checkPartialPool(int concurrentSize) throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		factory.failCallIndex = 2;
+		BeeDataSource ds = createDataSource(factory, 3, concurrentSize, false);
+		try {
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			if (pool.getConnTotalSize() != 2)
+				TestUtil.assertError("initial size expect value:%s,actual value:%s", 2, pool.getConnTotalSize());
+		} finally {
+			ds.close();
+		}
+	}
+
+	private static BeeDataSource createDataSource(MockConnectionFactory factory, int initSize, int concurrentSize, boolean failFast) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(initSize);
+		config.setMaxActive(initSize);
+		config.setInitialConcurrentSize(concurrentSize);
+		config.setInitialFailFast(failFast);
+		config.setCreateBreakerThreshold(0);
+		return new BeeDataSource(config);
+	}
+}
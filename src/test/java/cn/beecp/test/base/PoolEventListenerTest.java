@@ -0,0 +1,128 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BeeDataSourceConfigException;
+import cn.beecp.PoolEventListener;
+import cn.beecp.PoolEventType;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class PoolEventListenerTest extends TestCase {
+
+	public void testBorrowAndPrepareOnly() throws Exception {
+		CountListener listener = runWithEventTypes(PoolEventType.EVENT_BORROW + "," + PoolEventType.EVENT_PREPARE);
+		checkCount("borrow", 1, listener.borrowCount);
+		checkCount("prepare", 1, listener.prepareCount);
+		checkCount("return", 0, listener.returnCount);
+		checkCount("execute", 0, listener.executeCount);
+		checkCount("create", 0, listener.createCount);
+	}
+
+	public void testReturnAndExecuteOnly() throws Exception {
+		CountListener listener = runWithEventTypes(PoolEventType.EVENT_RETURN + "," + PoolEventType.EVENT_EXECUTE);
+		checkCount("borrow", 0, listener.borrowCount);
+		checkCount("prepare", 0, listener.prepareCount);
+		checkCount("return", 1, listener.returnCount);
+		checkCount("execute", 1, listener.executeCount);
+		checkCount("create", 0, listener.createCount);
+	}
+
+	public void testInvalidEventType() throws Exception {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new MockConnectionFactory());
+		config.setPoolEventListener(new CountListener());
+		config.setPoolEventTypes("borrow,unknown");
+		try {
+			new BeeDataSource(config).close();
+			TestUtil.assertError("pool created with invalid event type");
+		} catch (ExceptionInInitializerError e) {
+			Throwable cause = e.getCause();
+			while (cause != null && !(cause instanceof BeeDataSourceConfigException))
+				cause = cause.getCause();
+			if (cause == null)
+				TestUtil.assertError("invalid event type not reported as config error");
+		}
+	}
+
+	//borrow,prepare,execute and return once
+	private static CountListener runWithEventTypes(String eventTypes) throws Exception {
+		CountListener listener = new CountListener();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new MockConnectionFactory());
+		config.setInitialSize(1);
+		config.setPoolEventListener(listener);
+		config.setPoolEventTypes(eventTypes);
+		BeeDataSource ds = new BeeDataSource(config);
+		try {
+			Connection con = null;
+			PreparedStatement ps = null;
+			try {
+				con = ds.getConnection();
+				ps = con.prepareStatement("select 1 from dual");
+				ps.execute();
+			} finally {
+				if (ps != null) BeecpUtil.oclose(ps);
+				if (con != null) BeecpUtil.oclose(con);
+			}
+		} finally {
+			ds.close();
+		}
+		return listener;
+	}
+
+	private static void checkCount(String eventType, int expect, AtomicInteger count) {
+		if (count.get() != expect)
+			TestUtil.assertError(eventType + " event count expect value:%s,actual value:%s", expect, count.get());
+	}
+
+	private static final class CountListener implements PoolEventListener {
+		final AtomicInteger borrowCount = new AtomicInteger();
+		final AtomicInteger returnCount = new AtomicInteger();
+		final AtomicInteger createCount = new AtomicInteger();
+		final AtomicInteger prepareCount = new AtomicInteger();
+		final AtomicInteger executeCount = new AtomicInteger();
+
+		public void onBorrow(String poolName, int path, long waitNanos, SQLException cause) {
+			borrowCount.incrementAndGet();
+		}
+		public void onReturn(String poolName, long holdNanos) {
+			returnCount.incrementAndGet();
+		}
+		public void onConnectionCreate(String poolName, long tookNanos, SQLException cause) {
+			createCount.incrementAndGet();
+		}
+		public void onConnectionClose(String poolName, String reason) {
+		}
+		public void onConnectionTest(String poolName, long tookNanos, boolean active) {
+		}
+		public void onStatementPrepare(String poolName, String sql, long tookNanos, boolean cacheHit) {
+			prepareCount.incrementAndGet();
+		}
+		public void onStatementExecute(String poolName, long tookNanos) {
+			executeCount.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class RollingResetTest extends TestCase {
+
+	public void testReplaceAllWithBorrowers() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(4);
+		config.setMaxActive(4);
+		config.setMaxRetirePercent(50);//two in one tick
+		config.setMaxWait(2000);
+		BeeDataSource ds = new BeeDataSource(config);
+		try {
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			BorrowThread[] threads = new BorrowThread[4];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new BorrowThread(ds);
+				threads[i].start();
+			}
+
+			Thread.sleep(200);
+			pool.rollingReset();
+			Thread.sleep(4000);//retired in two ticks at least
+			for (BorrowThread thread : threads)
+				thread.running = false;
+			int successCount = 0, failedCount = 0;
+			for (BorrowThread thread : threads) {
+				thread.join();
+				successCount += thread.successCount.get();
+				failedCount += thread.failedCount.get();
+			}
+
+			if (failedCount != 0)
+				TestUtil.assertError("failed borrow count expect value:%s,actual value:%s", 0, failedCount);
+			if (successCount == 0)
+				TestUtil.assertError("no borrow succeeded during rolling reset");
+			if (factory.closedCount.get() != 4)
+				TestUtil.assertError("closed count expect value:%s,actual value:%s", 4, factory.closedCount.get());
+			if (factory.createdCount.get() != 8)
+				TestUtil.assertError("created count expect value:%s,actual value:%s", 8, factory.createdCount.get());
+		} finally {
+			ds.close();
+		}
+	}
+
+	static final class BorrowThread extends Thread {
+		private final BeeDataSource ds;
+		final AtomicInteger successCount = new AtomicInteger();
+		final AtomicInteger failedCount = new AtomicInteger();
+		volatile boolean running = true;
+
+		BorrowThread(BeeDataSource ds) {
+			this.ds = ds;
+		}
+
+		public void run() {
+			while (running) {
+				Connection con = null;
+				try {
+					con = ds.getConnection();
+					Thread.sleep(20);
+					successCount.incrementAndGet();
+				} catch (SQLException e) {
+					failedCount.incrementAndGet();
+				} catch (InterruptedException e) {
+					break;
+				} finally {
+					if (con != null) BeecpUtil.oclose(con);
+				}
+			}
+		}
+	}
+}
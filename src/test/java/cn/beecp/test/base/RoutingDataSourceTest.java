@@ -0,0 +1,101 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BeeRoutingDataSource;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class RoutingDataSourceTest extends TestCase {
+	private BeeRoutingDataSource ds;
+	private MockConnectionFactory primaryFactory;
+	private MockConnectionFactory replicaFactory;
+
+	public void setUp() throws Throwable {
+		primaryFactory = new MockConnectionFactory();
+		replicaFactory = new MockConnectionFactory();
+		BeeDataSourceConfig primaryConfig = new BeeDataSourceConfig();
+		primaryConfig.setConnectionFactory(primaryFactory);
+		primaryConfig.setInitialSize(0);
+		BeeDataSourceConfig replicaConfig = new BeeDataSourceConfig();
+		replicaConfig.setConnectionFactory(replicaFactory);
+		replicaConfig.setInitialSize(0);
+
+		List<BeeDataSourceConfig> replicaConfigs = new ArrayList<BeeDataSourceConfig>(1);
+		replicaConfigs.add(replicaConfig);
+		ds = new BeeRoutingDataSource(primaryConfig, replicaConfigs);
+		ds.setReplicaBalance(BeeRoutingDataSource.BALANCE_LATENCY);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testReadWriteRoute() throws Exception {
+		Connection con = null;
+		Statement st = null;
+		try {
+			con = ds.getConnection();
+			con.setReadOnly(true);
+			st = con.createStatement();//borrowed from replica on first statement
+		} finally {
+			if (st != null) BeecpUtil.oclose(st);
+			if (con != null) BeecpUtil.oclose(con);
+		}
+		if (replicaFactory.createdCount.get() != 1)
+			TestUtil.assertError("replica created count expect value:%s,actual value:%s", 1, replicaFactory.createdCount.get());
+		if (primaryFactory.createdCount.get() != 0)
+			TestUtil.assertError("primary created count expect value:%s,actual value:%s", 0, primaryFactory.createdCount.get());
+
+		con = null;
+		try {
+			con = ds.getWriteConnection();
+		} finally {
+			if (con != null) BeecpUtil.oclose(con);
+		}
+		if (primaryFactory.createdCount.get() != 1)
+			TestUtil.assertError("primary created count expect value:%s,actual value:%s", 1, primaryFactory.createdCount.get());
+	}
+
+	public void testClosePrimaryOnReplicaFailure() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSourceConfig primaryConfig = new BeeDataSourceConfig();
+		primaryConfig.setConnectionFactory(factory);
+		primaryConfig.setInitialSize(1);
+		BeeDataSourceConfig replicaConfig = new BeeDataSourceConfig();
+		replicaConfig.setConnectionFactory(new MockConnectionFactory());
+		replicaConfig.setMaxActive(1);
+		replicaConfig.setInitialSize(2);//invalid
+
+		List<BeeDataSourceConfig> replicaConfigs = new ArrayList<BeeDataSourceConfig>(1);
+		replicaConfigs.add(replicaConfig);
+		try {
+			new BeeRoutingDataSource(primaryConfig, replicaConfigs);
+			TestUtil.assertError("must fail on invalid replica configuration");
+		} catch (ExceptionInInitializerError e) {
+		}
+		if (factory.closedCount.get() != 1)
+			TestUtil.assertError("primary closed count expect value:%s,actual value:%s", 1, factory.closedCount.get());
+	}
+}
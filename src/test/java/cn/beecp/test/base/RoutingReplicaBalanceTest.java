@@ -0,0 +1,90 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BeeRoutingDataSource;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class RoutingReplicaBalanceTest extends TestCase {
+	private BeeRoutingDataSource ds;
+	private MockConnectionFactory primaryFactory;
+	private MockConnectionFactory[] replicaFactories;
+
+	//new data source for each balance,so hold time of replicas not carried between tests
+	private void createDataSource(String balance) {
+		primaryFactory = new MockConnectionFactory();
+		BeeDataSourceConfig primaryConfig = new BeeDataSourceConfig();
+		primaryConfig.setConnectionFactory(primaryFactory);
+		primaryConfig.setInitialSize(0);
+
+		replicaFactories = new MockConnectionFactory[2];
+		List<BeeDataSourceConfig> replicaConfigs = new ArrayList<BeeDataSourceConfig>(2);
+		for (int i = 0; i < replicaFactories.length; i++) {
+			replicaFactories[i] = new MockConnectionFactory();
+			BeeDataSourceConfig replicaConfig = new BeeDataSourceConfig();
+			replicaConfig.setConnectionFactory(replicaFactories[i]);
+			replicaConfig.setInitialSize(1);
+			replicaConfigs.add(replicaConfig);
+		}
+		ds = new BeeRoutingDataSource(primaryConfig, replicaConfigs);
+		ds.setReplicaBalance(balance);
+	}
+
+	public void testLeastUsingBalance() throws Exception {
+		checkReadsSpread(BeeRoutingDataSource.BALANCE_LEAST_USING);
+	}
+
+	public void testLatencyBalance() throws Exception {
+		checkReadsSpread(BeeRoutingDataSource.BALANCE_LATENCY);
+	}
+
+	private void checkReadsSpread(String balance) throws Exception {
+		createDataSource(balance);
+		try {
+			readOnReplicas();
+		} finally {
+			ds.close();
+		}
+	}
+
+	private void readOnReplicas() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			Connection con = null;
+			try {
+				con = ds.getReadConnection();
+				BeecpUtil.oclose(con.createStatement());
+				Thread.sleep(1);
+			} finally {
+				if (con != null) BeecpUtil.oclose(con);
+			}
+		}
+
+		for (int i = 0; i < replicaFactories.length; i++) {
+			if (replicaFactories[i].statementCount.get() == 0)
+				TestUtil.assertError("No read routed to replica(" + i + ")");
+		}
+		if (primaryFactory.statementCount.get() != 0)
+			TestUtil.assertError("primary statement count expect value:%s,actual value:%s", 0, primaryFactory.statementCount.get());
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.TransactionIsolationLevel;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class SessionStateCacheTest extends TestCase {
+	private BeeDataSource ds;
+	private MockConnectionFactory factory;
+
+	public void setUp() throws Throwable {
+		factory = new MockConnectionFactory();
+		factory.isolationRejected = true;
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(0);
+		config.setCacheSessionState(true);
+		config.setDefaultTransactionIsolation(TransactionIsolationLevel.LEVEL_ERIALIZABLE);
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testDefaultCacheOff() throws Exception {
+		if (new BeeDataSourceConfig().isCacheSessionState())
+			TestUtil.assertError("session state cache is on by default");
+	}
+
+	public void testStateAfterDefaultFailed() throws Exception {
+		Connection con = null;
+		try {
+			con = ds.getConnection();
+			int isolation = con.getTransactionIsolation();//default not applied,driver value
+			if (isolation != Connection.TRANSACTION_READ_COMMITTED)
+				TestUtil.assertError("isolation expect value:%s,actual value:%s", Connection.TRANSACTION_READ_COMMITTED, isolation);
+		} finally {
+			if (con != null)
+				BeecpUtil.oclose(con);
+		}
+	}
+
+	public void testSkipSetterWithSameValue() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSource ds = createDataSource(factory, true);
+		try {
+			Connection con = ds.getConnection();
+			try {
+				int setCount = factory.stateSetCount.get();
+				con.setAutoCommit(true);
+				con.setReadOnly(false);
+				con.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+				if (factory.stateSetCount.get() != setCount)
+					TestUtil.assertError("setter count expect value:%s,actual value:%s", setCount, factory.stateSetCount.get());
+
+				con.setAutoCommit(false);
+				if (factory.stateSetCount.get() != setCount + 1)
+					TestUtil.assertError("setter count expect value:%s,actual value:%s", setCount + 1, factory.stateSetCount.get());
+				con.setAutoCommit(false);
+				if (factory.stateSetCount.get() != setCount + 1)
+					TestUtil.assertError("setter count expect value:%s,actual value:%s", setCount + 1, factory.stateSetCount.get());
+			} finally {
+				BeecpUtil.oclose(con);
+			}
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testForwardSetterWithoutCache() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSource ds = createDataSource(factory, false);
+		try {
+			Connection con = ds.getConnection();
+			try {
+				int setCount = factory.stateSetCount.get();
+				con.setAutoCommit(true);
+				con.setReadOnly(false);
+				if (factory.stateSetCount.get() != setCount + 2)
+					TestUtil.assertError("setter count expect value:%s,actual value:%s", setCount + 2, factory.stateSetCount.get());
+			} finally {
+				BeecpUtil.oclose(con);
+			}
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testGetterFromTrackedState() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSource ds = createDataSource(factory, true);
+		try {
+			Connection con = ds.getConnection();
+			try {
+				con.setAutoCommit(false);
+				con.setReadOnly(true);
+				int getCount = factory.stateGetCount.get();
+				if (con.getAutoCommit())
+					TestUtil.assertError("autoCommit expect value:%s,actual value:%s", false, true);
+				if (!con.isReadOnly())
+					TestUtil.assertError("readOnly expect value:%s,actual value:%s", true, false);
+				if (con.getTransactionIsolation() != Connection.TRANSACTION_READ_COMMITTED)
+					TestUtil.assertError("isolation expect value:%s,actual value:%s", Connection.TRANSACTION_READ_COMMITTED, con.getTransactionIsolation());
+				if (factory.stateGetCount.get() != getCount)
+					TestUtil.assertError("getter count expect value:%s,actual value:%s", getCount, factory.stateGetCount.get());
+			} finally {
+				BeecpUtil.oclose(con);
+			}
+		} finally {
+			ds.close();
+		}
+	}
+
+	public void testForwardGetterWithoutCache() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeDataSource ds = createDataSource(factory, false);
+		try {
+			Connection con = ds.getConnection();
+			try {
+				int getCount = factory.stateGetCount.get();
+				con.getAutoCommit();
+				con.isReadOnly();
+				if (factory.stateGetCount.get() != getCount + 2)
+					TestUtil.assertError("getter count expect value:%s,actual value:%s", getCount + 2, factory.stateGetCount.get());
+			} finally {
+				BeecpUtil.oclose(con);
+			}
+		} finally {
+			ds.close();
+		}
+	}
+
+	private static BeeDataSource createDataSource(MockConnectionFactory factory, boolean cacheSessionState) {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(1);
+		config.setMaxActive(1);
+		config.setCacheSessionState(cacheSessionState);
+		config.setDefaultTransactionIsolation(TransactionIsolationLevel.LEVEL_READ_COMMITTED);
+		return new BeeDataSource(config);
+	}
+}
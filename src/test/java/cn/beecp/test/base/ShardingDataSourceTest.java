@@ -0,0 +1,158 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.BeeShardingDataSource;
+import cn.beecp.pool.ConnectionBudget;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class ShardingDataSourceTest extends TestCase {
+	private BeeShardingDataSource ds;
+	private MockConnectionFactory[] factories;
+
+	public void setUp() throws Throwable {
+		factories = new MockConnectionFactory[]{new MockConnectionFactory(), new MockConnectionFactory()};
+		ds = createDataSource(factories, 2);
+	}
+
+	private static BeeShardingDataSource createDataSource(MockConnectionFactory[] factories, int maxTotalActive) {
+		List<BeeDataSourceConfig> configs = new ArrayList<BeeDataSourceConfig>(factories.length);
+		for (MockConnectionFactory factory : factories) {
+			BeeDataSourceConfig config = new BeeDataSourceConfig();
+			config.setConnectionFactory(factory);
+			config.setInitialSize(0);
+			config.setMaxActive(2);
+			config.setBorrowConcurrentSize(2);
+			config.setMaxWait(2000);
+			config.setFatalErrorIdleAction("evict");
+			configs.add(config);
+		}
+		return new BeeShardingDataSource(configs, maxTotalActive);
+	}
+
+	public void tearDown() throws Throwable {
+		ds.close();
+	}
+
+	public void testConfigNotChanged() throws Exception {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new MockConnectionFactory());
+		config.setInitialSize(0);
+		List<BeeDataSourceConfig> configs = new ArrayList<BeeDataSourceConfig>(1);
+		configs.add(config);
+		BeeShardingDataSource shardDs = new BeeShardingDataSource(configs, 2);
+		shardDs.close();
+		if (config.getPoolName() != null || config.getSharedPoolThreads() != null || config.getConnectionBudget() != null)
+			TestUtil.assertError("configuration of caller changed by sharding data source");
+	}
+
+	public void testUnregisterOnFailedInit() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		factory.failMode = MockConnectionFactory.FAIL_SQL;
+		ConnectionBudget budget = new ConnectionBudget(2);
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(factory);
+		config.setInitialSize(1);
+		config.setConnectionBudget(budget);
+		try {
+			new BeeDataSource(config);
+			TestUtil.assertError("pool initialized with failed initial connection");
+		} catch (ExceptionInInitializerError e) {
+		}
+		if (budget.getPoolSize() != 0)
+			TestUtil.assertError("budget pool size expect value:%s,actual value:%s", 0, budget.getPoolSize());
+	}
+
+	public void testBudgetReclaim() throws Exception {
+		Connection con = ds.getConnection(Integer.valueOf(0));
+		BeecpUtil.oclose(con);//idle in shard 0
+
+		Connection con1 = null;
+		Connection con2 = null;
+		try {
+			con1 = ds.getConnection(Integer.valueOf(1));
+			con2 = ds.getConnection(Integer.valueOf(1));//idle connection of shard 0 closed for budget
+			if (ds.getConnectionBudget().getUsedSize() != 2)
+				TestUtil.assertError("budget used size expect value:%s,actual value:%s", 2, ds.getConnectionBudget().getUsedSize());
+			if (factories[0].closedCount.get() != 1)
+				TestUtil.assertError("shard 0 closed count expect value:%s,actual value:%s", 1, factories[0].closedCount.get());
+		} finally {
+			if (con1 != null) BeecpUtil.oclose(con1);
+			if (con2 != null) BeecpUtil.oclose(con2);
+		}
+	}
+
+	public void testReplaceOnSharedThreads() throws Exception {
+		MockConnectionFactory factory = new MockConnectionFactory();
+		BeeShardingDataSource shardDs = createDataSource(new MockConnectionFactory[]{factory}, 0);
+		Connection con1 = null;
+		Connection con2 = null;
+		Statement st = null;
+		try {
+			con1 = shardDs.getConnection(Integer.valueOf(0));
+			con2 = shardDs.getConnection(Integer.valueOf(0));
+			BeecpUtil.oclose(con2);//idle
+			con2 = null;
+
+			st = con1.createStatement();
+			factory.down = true;
+			try {
+				st.execute("SELECT 1");
+				TestUtil.assertError("must throw link failure");
+			} catch (SQLException e) {
+			}
+			factory.down = false;
+
+			Thread.sleep(500);//idle one evicted and replaced by creation task
+			if (factory.createdCount.get() != 3)
+				TestUtil.assertError("created count expect value:%s,actual value:%s", 3, factory.createdCount.get());
+			if (shardDs.getShardMonitor(0).getConnIdleSize() != 1)
+				TestUtil.assertError("idle size expect value:%s,actual value:%s", 1, shardDs.getShardMonitor(0).getConnIdleSize());
+		} finally {
+			if (st != null) BeecpUtil.oclose(st);
+			if (con1 != null) BeecpUtil.oclose(con1);
+			shardDs.close();
+		}
+	}
+
+	public void testSharedThreads() throws Exception {
+		for (Thread thread : getAllThreads()) {
+			if ("PooledConnectionAdd".equals(thread.getName()) && thread.isAlive())
+				TestUtil.assertError("shard pool started its own creation thread");
+		}
+	}
+
+	private static Thread[] getAllThreads() {
+		ThreadGroup group = Thread.currentThread().getThreadGroup();
+		while (group.getParent() != null) group = group.getParent();
+		Thread[] threads = new Thread[group.activeCount() * 2];
+		int size = group.enumerate(threads, true);
+		Thread[] result = new Thread[size];
+		System.arraycopy(threads, 0, result, 0, size);
+		return result;
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.base;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.beecp.BeeDataSource;
+import cn.beecp.BeeDataSourceConfig;
+import cn.beecp.WorkloadGroup;
+import cn.beecp.pool.FastConnectionPool;
+import cn.beecp.test.TestCase;
+import cn.beecp.test.TestUtil;
+import cn.beecp.test.mock.MockConnectionFactory;
+import cn.beecp.util.BeecpUtil;
+
+public class WorkloadGroupsTest extends TestCase {
+	private BeeDataSource ds;
+
+	public void setUp() throws Throwable {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new MockConnectionFactory());
+		config.setInitialSize(0);
+		config.setMaxActive(2);
+		config.setBorrowConcurrentSize(2);
+		config.setMaxWait(200);
+		config.setWorkloadGroups("default,batch:1:1");
+		ds = new BeeDataSource(config);
+	}
+
+	public void tearDown() throws Throwable {
+		WorkloadGroup.unbind();
+		ds.close();
+	}
+
+	public void testReservedMinAfterTimeout() throws Exception {
+		Connection con1 = null;
+		Connection con2 = null;
+		try {
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+			WorkloadGroup.bind("default");
+			con1 = ds.getConnection();
+			try {
+				con2 = ds.getConnection();//last connection is reserved for minimum of batch group
+				TestUtil.assertError("must timeout on connection reserved for other group");
+			} catch (SQLException e) {
+			}
+			checkGroupUsingSize(pool, "default", 1);//count of failed borrow is released
+
+			WorkloadGroup.bind("batch");
+			con2 = ds.getConnection();
+			checkGroupUsingSize(pool, "batch", 1);
+		} finally {
+			if (con1 != null)
+				BeecpUtil.oclose(con1);
+			if (con2 != null)
+				BeecpUtil.oclose(con2);
+		}
+
+		FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(ds);
+		checkGroupUsingSize(pool, "default", 0);
+		checkGroupUsingSize(pool, "batch", 0);
+	}
+
+	public void testHandOffOnGroupCapInFairMode() throws Exception {
+		checkHandOffOnGroupCap(true);
+	}
+
+	public void testHandOffOnGroupCapInCompeteMode() throws Exception {
+		checkHandOffOnGroupCap(false);
+	}
+
+	//groups are capped by minimum of other group,a connection refused by a waiter of full group is handed to next waiter
+	private void checkHandOffOnGroupCap(boolean fair) throws Exception {
+		BeeDataSourceConfig config = new BeeDataSourceConfig();
+		config.setConnectionFactory(new MockConnectionFactory());
+		config.setInitialSize(2);
+		config.setMaxActive(2);
+		config.setBorrowConcurrentSize(2);
+		config.setFairMode(fair);
+		config.setMaxWait(1000);
+		config.setWorkloadGroups("a:1:1,b:1:1");
+		final BeeDataSource groupDs = new BeeDataSource(config);
+		final AtomicInteger failedSize = new AtomicInteger();
+		final long endTime = System.currentTimeMillis() + 2000;
+		Thread[] threads = new Thread[8];
+		try {
+			for (int i = 0; i < threads.length; i++) {
+				final String group = i % 2 == 0 ? "a" : "b";
+				threads[i] = new Thread() {
+					public void run() {
+						WorkloadGroup.bind(group);
+						while (System.currentTimeMillis() < endTime) {
+							Connection con = null;
+							try {
+								con = groupDs.getConnection();
+							} catch (SQLException e) {
+								failedSize.incrementAndGet();
+							} finally {
+								if (con != null) BeecpUtil.oclose(con);
+							}
+						}
+					}
+				};
+				threads[i].start();
+			}
+			for (Thread thread : threads) thread.join();
+
+			if (failedSize.get() != 0)
+				TestUtil.assertError("timeout borrow size expect value:%s,actual value:%s", 0, failedSize.get());
+			FastConnectionPool pool = (FastConnectionPool) TestUtil.getPool(groupDs);
+			checkGroupUsingSize(pool, "a", 0);
+			checkGroupUsingSize(pool, "b", 0);
+		} finally {
+			groupDs.close();
+		}
+	}
+
+	private static void checkGroupUsingSize(FastConnectionPool pool, String group, int expectSize) {
+		Map info = pool.printPoolInfo();
+		Object size = info.get("GroupUsingSize(" + group + ")");
+		if (!Integer.valueOf(expectSize).equals(size))
+			TestUtil.assertError("using size of group(" + group + ") expect value:%s,actual value:%s", expectSize, size);
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.mock;
+
+import cn.beecp.ConnectionFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection factory for test,create proxy connections without database
+ *
+ * @author Chris
+ * @version 1.0
+ */
+public class MockConnectionFactory implements ConnectionFactory {
+	public static final int FAIL_NONE = 0;
+	public static final int FAIL_SQL = 1;
+	public static final int FAIL_RUNTIME = 2;
+
+	public final AtomicInteger createdCount = new AtomicInteger();
+	public final AtomicInteger closedCount = new AtomicInteger();
+	public final AtomicInteger createCallCount = new AtomicInteger();
+	public final AtomicInteger statementCount = new AtomicInteger();
+	public final AtomicInteger validCallCount = new AtomicInteger();
+	public final AtomicInteger stateSetCount = new AtomicInteger();//setAutoCommit,setTransactionIsolation,setReadOnly
+	public final AtomicInteger stateGetCount = new AtomicInteger();//getAutoCommit,getTransactionIsolation,isReadOnly
+	public volatile int failMode = FAIL_NONE;
+	public volatile int failCallIndex;//create call of this index(from 1)fails,zero means none
+	public volatile boolean down;
+	public volatile long createDelay;
+	public volatile long validDelay;
+	public volatile boolean isolationRejected;
+
+	public Connection create() throws SQLException {
+		int callIndex = createCallCount.incrementAndGet();
+		if (createDelay > 0) {
+			try {
+				Thread.sleep(createDelay);
+			} catch (InterruptedException e) {
+			}
+		}
+		if (callIndex == failCallIndex) throw new SQLException("mock create failed", "08001");
+		if (failMode == FAIL_SQL) throw new SQLException("mock create failed", "08001");
+		if (failMode == FAIL_RUNTIME) throw new IllegalStateException("mock create failed");
+		createdCount.incrementAndGet();
+		return (Connection) Proxy.newProxyInstance(MockConnectionFactory.class.getClassLoader(),
+				new Class[]{Connection.class}, new MockConnectionHandler());
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (type == boolean.class) return Boolean.FALSE;
+		if (type == int.class) return Integer.valueOf(0);
+		if (type == long.class) return Long.valueOf(0L);
+		return null;
+	}
+
+	private class MockConnectionHandler implements InvocationHandler {
+		private boolean closed;
+		private boolean autoCommit = true;
+		private int isolation = Connection.TRANSACTION_READ_COMMITTED;
+		private boolean readOnly;
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("close".equals(name)) {
+				if (!closed) closedCount.incrementAndGet();
+				closed = true;
+				return null;
+			}
+			if ("isClosed".equals(name)) return closed;
+			if ("isValid".equals(name)) {
+				validCallCount.incrementAndGet();
+				if (validDelay > 0) Thread.sleep(validDelay);
+				return !down && !closed;
+			}
+			if ("setAutoCommit".equals(name)) {
+				stateSetCount.incrementAndGet();
+				autoCommit = (Boolean) args[0];
+				return null;
+			}
+			if ("getAutoCommit".equals(name)) {
+				stateGetCount.incrementAndGet();
+				return autoCommit;
+			}
+			if ("setTransactionIsolation".equals(name)) {
+				stateSetCount.incrementAndGet();
+				if (isolationRejected) throw new SQLException("mock isolation not supported");
+				isolation = (Integer) args[0];
+				return null;
+			}
+			if ("getTransactionIsolation".equals(name)) {
+				stateGetCount.incrementAndGet();
+				return isolation;
+			}
+			if ("setReadOnly".equals(name)) {
+				stateSetCount.incrementAndGet();
+				readOnly = (Boolean) args[0];
+				return null;
+			}
+			if ("isReadOnly".equals(name)) {
+				stateGetCount.incrementAndGet();
+				return readOnly;
+			}
+			if ("getHoldability".equals(name)) return ResultSet.HOLD_CURSORS_OVER_COMMIT;
+			if ("createStatement".equals(name) || "prepareStatement".equals(name) || "prepareCall".equals(name))
+				return createStatement(method.getReturnType());
+			if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+			if ("equals".equals(name)) return proxy == args[0];
+			if ("toString".equals(name)) return "MockConnection@" + System.identityHashCode(proxy);
+			return defaultValue(method.getReturnType());
+		}
+	}
+
+	private Object createStatement(Class<?> type) {
+		statementCount.incrementAndGet();
+		return Proxy.newProxyInstance(MockConnectionFactory.class.getClassLoader(), new Class[]{type}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if (name.startsWith("execute") && down) throw new SQLException("mock link failure", "08S01");
+				if ("hashCode".equals(name)) return System.identityHashCode(proxy);
+				if ("equals".equals(name)) return proxy == args[0];
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+}
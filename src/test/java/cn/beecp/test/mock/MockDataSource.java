@@ -0,0 +1,65 @@
+/*
+ * Copyright Chris2018998
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cn.beecp.test.mock;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DataSource for test,connections are created by a mock factory and users are recorded
+ *
+ * @author Chris
+ * @version 1.0
+ */
+public class MockDataSource implements DataSource {
+	public final MockConnectionFactory factory = new MockConnectionFactory();
+	public final List<String> userList = Collections.synchronizedList(new ArrayList<String>());
+	public final List<String> credentialList = Collections.synchronizedList(new ArrayList<String>());//user/password
+
+	public Connection getConnection() throws SQLException {
+		return factory.create();
+	}
+	public Connection getConnection(String username, String password) throws SQLException {
+		if (!userList.contains(username)) userList.add(username);
+		credentialList.add(username + "/" + password);
+		return factory.create();
+	}
+	public PrintWriter getLogWriter() throws SQLException {
+		return null;
+	}
+	public void setLogWriter(PrintWriter out) throws SQLException {
+	}
+	public void setLoginTimeout(int seconds) throws SQLException {
+	}
+	public int getLoginTimeout() throws SQLException {
+		return 0;
+	}
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException("Not supported");
+	}
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		throw new SQLException("Not supported");
+	}
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return false;
+	}
+}